@@ -3,7 +3,46 @@
  */
 import React, { Component } from 'react';
 import PropTypes from 'prop-types';
-import {requireNativeComponent, ViewPropTypes} from 'react-native';
+import {findNodeHandle, ViewPropTypes} from 'react-native';
+import VdocipherRnBridge from './specs/NativeVdocipherRnBridge';
+import RCTVdoPlayerView, {Commands} from './specs/VdoPlayerViewNativeComponent';
+
+// playback frame layout; must match VdoEventEmitter on the native side
+const FRAME_DIRTY = 0;
+const FRAME_CURRENT_TIME = 1;
+const FRAME_BUFFER_TIME = 2;
+const FRAME_PLAYER_STATE = 3;
+const FRAME_PLAY_WHEN_READY = 4;
+const FRAME_PLAYBACK_SPEED = 5;
+
+const DIRTY_PROGRESS = 1;
+const DIRTY_BUFFER = 1 << 1;
+const DIRTY_PLAYER_STATE = 1 << 2;
+const DIRTY_PLAYBACK_SPEED = 1 << 3;
+
+const FRAME_PLAYER_STATES = ['idle', 'buffering', 'ready', 'ended'];
+
+// native event name -> wrapper component callback prop
+const EVENT_HANDLER_PROPS = {
+  onInitSuccess: 'onInitializationSuccess',
+  onInitFailure: 'onInitializationFailure',
+  onVdoLoading: 'onLoading',
+  onVdoLoaded: 'onLoaded',
+  onVdoLoadError: 'onLoadError',
+  onVdoPlayerStateChanged: 'onPlayerStateChanged',
+  onVdoProgress: 'onProgress',
+  onVdoBufferUpdate: 'onBufferUpdate',
+  onVdoPlaybackSpeedChanged: 'onPlaybackSpeedChanged',
+  onVdoTracksChanged: 'onTracksChanged',
+  onVdoMediaEnded: 'onMediaEnded',
+  onVdoError: 'onError',
+  onVdoPlaybackProperties: 'onPlaybackProperties',
+  onVdoEnterFullscreen: 'onEnterFullscreen',
+  onVdoExitFullscreen: 'onExitFullscreen',
+};
+
+// events that may be delivered through playback frames
+const FRAME_EVENTS = ['onVdoPlayerStateChanged', 'onVdoProgress', 'onVdoBufferUpdate', 'onVdoPlaybackSpeedChanged'];
 
 export default class VdoPlayerView extends Component {
   constructor(props) {
@@ -12,31 +51,60 @@ export default class VdoPlayerView extends Component {
       fullscreen: true,
       orientation: 'portrait',
     }
-    this._propRef = 1;
+    this._trackCatalogue = null;
+    this._subscribedEvents = null;
+    this._subscribedEventsKey = null;
   }
 
   seek = seekTargetMs => {
     if (this._root) {
-      this._root.setNativeProps({seek: seekTargetMs});
+      Commands.seek(this._root, seekTargetMs);
     }
   }
 
   enterFullscreen = () => {
     if (this._root) {
-      this._root.setNativeProps({fullscreen: true});
+      Commands.enterFullscreen(this._root);
     }
   }
 
   exitFullscreen = () => {
     if (this._root) {
-      this._root.setNativeProps({fullscreen: false});
+      Commands.exitFullscreen(this._root);
     }
   }
 
   getPlaybackProperties = () => {
     if (this._root) {
-      this._root.setNativeProps({playbackProperties: this._propRef++});
+      Commands.getPlaybackProperties(this._root);
+    }
+  }
+
+  /**
+   * Synchronously returns the latest playback state, or null if the player is not mounted.
+   */
+  getPlaybackState = () => {
+    const viewTag = this._root ? findNodeHandle(this._root) : null;
+    return viewTag != null ? VdocipherRnBridge.getPlaybackState(viewTag) : null;
+  }
+
+  /**
+   * Native events for which a handler is provided; the native side only sends these. The same
+   * array is returned until the set of provided handlers changes, so that re-renders do not
+   * send the prop to native again.
+   */
+  _getSubscribedEvents = () => {
+    const events = Object.keys(EVENT_HANDLER_PROPS)
+      .filter(name => this.props[EVENT_HANDLER_PROPS[name]] || this.props[name]);
+    const key = events.join(',');
+    if (key !== this._subscribedEventsKey) {
+      if (events.some(name => FRAME_EVENTS.includes(name))) {
+        events.push('onVdoPlaybackFrame');
+      }
+      this._subscribedEvents = events;
+      this._subscribedEventsKey = key;
     }
+    return this._subscribedEvents;
   }
 
   _onInitSuccess = (event) => {
@@ -94,8 +162,42 @@ export default class VdoPlayerView extends Component {
   }
 
   _onTracksChanged = (event) => {
+    const {catalogueVersion, availableTracks, selectedTrackIds, selectedTracks} = event.nativeEvent;
+    if (availableTracks) {
+      // a new track catalogue; later events only carry the selected track ids
+      const tracksById = {};
+      availableTracks.forEach(track => tracksById[track.id] = track);
+      this._trackCatalogue = {version: catalogueVersion, availableTracks, tracksById};
+    }
+    const catalogue = this._trackCatalogue;
+    if (!catalogue || catalogue.version !== catalogueVersion) {
+      return;
+    }
     if (this.props.onTracksChanged) {
-      this.props.onTracksChanged(event.nativeEvent);
+      this.props.onTracksChanged({
+        availableTracks: catalogue.availableTracks,
+        selectedTracks: selectedTracks || selectedTrackIds.map(id => catalogue.tracksById[id]),
+      });
+    }
+  }
+
+  _onPlaybackFrame = (event) => {
+    const frame = event.nativeEvent.frame;
+    const dirty = frame[FRAME_DIRTY];
+    if ((dirty & DIRTY_PLAYER_STATE) && this.props.onPlayerStateChanged) {
+      this.props.onPlayerStateChanged({
+        playerState: FRAME_PLAYER_STATES[frame[FRAME_PLAYER_STATE]],
+        playWhenReady: frame[FRAME_PLAY_WHEN_READY] === 1,
+      });
+    }
+    if ((dirty & DIRTY_PROGRESS) && this.props.onProgress) {
+      this.props.onProgress({currentTime: frame[FRAME_CURRENT_TIME]});
+    }
+    if ((dirty & DIRTY_BUFFER) && this.props.onBufferUpdate) {
+      this.props.onBufferUpdate({bufferTime: frame[FRAME_BUFFER_TIME]});
+    }
+    if ((dirty & DIRTY_PLAYBACK_SPEED) && this.props.onPlaybackSpeedChanged) {
+      this.props.onPlaybackSpeedChanged(frame[FRAME_PLAYBACK_SPEED]);
     }
   }
 
@@ -142,11 +244,13 @@ export default class VdoPlayerView extends Component {
         onVdoBufferUpdate={this._onBufferUpdate}
         onVdoPlaybackSpeedChanged={this._onPlaybackSpeedChanged}
         onVdoTracksChanged={this._onTracksChanged}
+        onVdoPlaybackFrame={this._onPlaybackFrame}
         onVdoMediaEnded={((embedInfo) => (event) => this._onMediaEnded(embedInfo, event))(this.props.embedInfo)}
         onVdoError={((embedInfo) => (event) => this._onError(embedInfo, event))(this.props.embedInfo)}
         onVdoPlaybackProperties={this._onPlaybackProperties}
         onVdoEnterFullscreen={this._onEnterFullscreen}
         onVdoExitFullscreen={this._onExitFullscreen}
+        subscribedEvents={this._getSubscribedEvents()}
         {...this.props}
       />
     );
@@ -165,6 +269,7 @@ VdoPlayerView.propTypes = {
   onVdoBufferUpdate: PropTypes.func,
   onVdoPlaybackSpeedChanged: PropTypes.func,
   onVdoTracksChanged: PropTypes.func,
+  onVdoPlaybackFrame: PropTypes.func,
   onVdoMediaEnded: PropTypes.func,
   onVdoError: PropTypes.func,
   playbackProperties: PropTypes.number,
@@ -173,12 +278,16 @@ VdoPlayerView.propTypes = {
   fullscreen: PropTypes.bool,
   onVdoEnterFullscreen: PropTypes.func,
   onVdoExitFullscreen: PropTypes.func,
+  subscribedEvents: PropTypes.arrayOf(PropTypes.string),
 
   /* Wrapper component public api */
   embedInfo: PropTypes.object,
   showNativeControls: PropTypes.bool,
   playWhenReady: PropTypes.bool,
   playbackSpeed: PropTypes.number,
+  progressIntervalMs: PropTypes.number,
+  bufferUpdateIntervalMs: PropTypes.number,
+  playbackFrameIntervalMs: PropTypes.number,
   onInitializationSuccess: PropTypes.func,
   onInitializationFailure: PropTypes.func,
   onLoading: PropTypes.func,
@@ -198,10 +307,3 @@ VdoPlayerView.propTypes = {
   /* Required */
   ...ViewPropTypes,
 };
-
-var RCTVdoPlayerView = requireNativeComponent('RCTVdoPlayerView', VdoPlayerView, {
-  nativeOnly: {
-    onInitSuccess: true,
-    onInitFailure: true,
-  }
-});
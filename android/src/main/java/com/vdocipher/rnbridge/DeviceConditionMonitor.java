@@ -0,0 +1,140 @@
+package com.vdocipher.rnbridge;
+
+import android.annotation.TargetApi;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.util.Log;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reports whether the device is on an unmetered network and whether it is charging, and
+ * notifies a listener when either changes.
+ * <p>
+ * Network changes are observed with a default network callback from API 24, and with the
+ * connectivity broadcast before that.
+ */
+
+class DeviceConditionMonitor {
+    private static final String TAG = "DeviceConditionMonitor";
+
+    interface Listener {
+        void onDeviceConditionsChanged(boolean unmeteredNetwork, boolean charging);
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private boolean started = false;
+    @Nullable
+    private ConnectivityManager.NetworkCallback networkCallback = null;
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            notifyListener();
+        }
+    };
+
+    DeviceConditionMonitor(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+    }
+
+    /**
+     * Starts notifying the listener of changes. Read the current conditions with
+     * {@link #isUnmeteredNetwork()} and {@link #isCharging()} before, as the first notification
+     * may come later.
+     */
+    void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_POWER_CONNECTED);
+        filter.addAction(Intent.ACTION_POWER_DISCONNECTED);
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N || !registerNetworkCallback()) {
+            filter.addAction(ConnectivityManager.CONNECTIVITY_ACTION);
+        }
+        context.registerReceiver(receiver, filter);
+    }
+
+    void stop() {
+        if (started) {
+            started = false;
+            context.unregisterReceiver(receiver);
+            if (networkCallback != null) {
+                getConnectivityManager().unregisterNetworkCallback(networkCallback);
+                networkCallback = null;
+            }
+        }
+    }
+
+    boolean isUnmeteredNetwork() {
+        ConnectivityManager connectivityManager = getConnectivityManager();
+        if (connectivityManager == null) {
+            return false;
+        }
+        try {
+            NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+            return networkInfo != null && networkInfo.isConnected() && !connectivityManager.isActiveNetworkMetered();
+        } catch (SecurityException e) {
+            Log.w(TAG, "network state not available: " + e.getMessage());
+            return false;
+        }
+    }
+
+    boolean isCharging() {
+        // sticky broadcast, no receiver needed to read it
+        Intent batteryStatus = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return batteryStatus != null && batteryStatus.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+
+    /**
+     * @return true if registered; callbacks are invoked on a connectivity thread
+     */
+    @TargetApi(Build.VERSION_CODES.N)
+    private boolean registerNetworkCallback() {
+        ConnectivityManager connectivityManager = getConnectivityManager();
+        if (connectivityManager == null) {
+            return false;
+        }
+        ConnectivityManager.NetworkCallback callback = new ConnectivityManager.NetworkCallback() {
+            @Override
+            public void onCapabilitiesChanged(Network network, NetworkCapabilities capabilities) {
+                listener.onDeviceConditionsChanged(
+                        capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED), isCharging());
+            }
+
+            @Override
+            public void onLost(Network network) {
+                listener.onDeviceConditionsChanged(false, isCharging());
+            }
+        };
+        try {
+            connectivityManager.registerDefaultNetworkCallback(callback);
+        } catch (SecurityException e) {
+            Log.w(TAG, "network state not available: " + e.getMessage());
+            return false;
+        }
+        networkCallback = callback;
+        return true;
+    }
+
+    private void notifyListener() {
+        listener.onDeviceConditionsChanged(isUnmeteredNetwork(), isCharging());
+    }
+
+    @Nullable
+    private ConnectivityManager getConnectivityManager() {
+        return (ConnectivityManager)context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+}
@@ -0,0 +1,144 @@
+package com.vdocipher.rnbridge;
+
+import android.content.Context;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.vdocipher.aegis.offline.DownloadStatus;
+import com.vdocipher.aegis.offline.VdoDownloadManager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps download events that happen while no js is attached, e.g. before js has loaded or while
+ * the bridge is being rebuilt, so that they can be replayed when js attaches.
+ * <p>
+ * Only the latest event of each media is kept, for a bounded number of media. There is one
+ * journal per process; it listens to the download manager for as long as the process lives, so
+ * that it outlives the download module across bridge reloads.
+ */
+
+class DownloadEventJournal implements VdoDownloadManager.EventListener {
+    private static final int MAX_ENTRIES = 500;
+
+    @Nullable
+    private static DownloadEventJournal instance = null;
+
+    // guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private boolean attached = false;
+    private boolean overflowed = false;
+
+    private DownloadEventJournal() {
+    }
+
+    /**
+     * Must be called before the download module registers its own listener, so that the journal
+     * sees each event first.
+     */
+    static synchronized DownloadEventJournal getInstance(Context context) {
+        if (instance == null) {
+            instance = new DownloadEventJournal();
+            VdoDownloadManager.getInstance(context).addEventListener(instance);
+        }
+        return instance;
+    }
+
+    synchronized boolean isAttached() {
+        return attached;
+    }
+
+    /**
+     * Marks js as attached, so that events are sent to js instead of being kept.
+     *
+     * @param mapper makes the download status maps of the kept events
+     * @return the kept events, oldest first, and whether events were dropped because there were
+     * too many media
+     */
+    synchronized WritableMap attach(DownloadStatusMapper mapper) {
+        WritableArray events = Arguments.createArray();
+        for (Entry entry : entries.values()) {
+            WritableMap event = Arguments.createMap();
+            event.putString("eventName", entry.eventName);
+            event.putString("mediaId", entry.mediaId);
+            if (entry.downloadStatus != null) {
+                event.putMap("downloadStatus", mapper.makeMap(entry.downloadStatus));
+            }
+            events.pushMap(event);
+        }
+        WritableMap replay = Arguments.createMap();
+        replay.putArray("events", events);
+        replay.putBoolean("overflowed", overflowed);
+
+        entries.clear();
+        overflowed = false;
+        attached = true;
+        return replay;
+    }
+
+    /**
+     * Marks js as detached; events are kept until js attaches again.
+     */
+    synchronized void detach() {
+        attached = false;
+    }
+
+    private synchronized void record(String eventName, String mediaId, @Nullable DownloadStatus downloadStatus) {
+        if (attached) {
+            return;
+        }
+        // move the media to the end, so that the media changed least recently is dropped first
+        entries.remove(mediaId);
+        entries.put(mediaId, new Entry(eventName, mediaId, downloadStatus));
+        if (entries.size() > MAX_ENTRIES) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            iterator.next();
+            iterator.remove();
+            overflowed = true;
+        }
+    }
+
+    // VdoDownloadManager.EventListener impl
+
+    @Override
+    public void onQueued(String mediaId, DownloadStatus downloadStatus) {
+        record("onQueued", mediaId, downloadStatus);
+    }
+
+    @Override
+    public void onChanged(String mediaId, DownloadStatus downloadStatus) {
+        record("onChanged", mediaId, downloadStatus);
+    }
+
+    @Override
+    public void onCompleted(String mediaId, DownloadStatus downloadStatus) {
+        record("onCompleted", mediaId, downloadStatus);
+    }
+
+    @Override
+    public void onFailed(String mediaId, DownloadStatus downloadStatus) {
+        record("onFailed", mediaId, downloadStatus);
+    }
+
+    @Override
+    public void onDeleted(String mediaId) {
+        record("onDeleted", mediaId, null);
+    }
+
+    private static class Entry {
+        final String eventName;
+        final String mediaId;
+        @Nullable
+        final DownloadStatus downloadStatus;
+
+        Entry(String eventName, String mediaId, @Nullable DownloadStatus downloadStatus) {
+            this.eventName = eventName;
+            this.mediaId = mediaId;
+            this.downloadStatus = downloadStatus;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.vdocipher.rnbridge;
+
+import java.util.HashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reference counted subscriptions to download events, per mediaId or for all media.
+ * <p>
+ * Download events for a media are only sent to js if there is a subscription for all media or
+ * for that media, so that screens watching a single download do not pay for events of every
+ * other download.
+ */
+
+class DownloadEventSubscriptions {
+    // guarded by this
+    private final HashMap<String, Integer> mediaSubscriptions = new HashMap<>();
+    private int allMediaSubscriptions = 0;
+
+    /**
+     * @param mediaId null to subscribe to events of all media
+     */
+    synchronized void subscribe(@Nullable String mediaId) {
+        if (mediaId == null) {
+            allMediaSubscriptions++;
+            return;
+        }
+        Integer count = mediaSubscriptions.get(mediaId);
+        mediaSubscriptions.put(mediaId, count != null ? count + 1 : 1);
+    }
+
+    /**
+     * Removes one subscription made by {@link #subscribe(String)} with the same mediaId.
+     */
+    synchronized void unsubscribe(@Nullable String mediaId) {
+        if (mediaId == null) {
+            allMediaSubscriptions = Math.max(0, allMediaSubscriptions - 1);
+            return;
+        }
+        Integer count = mediaSubscriptions.get(mediaId);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            mediaSubscriptions.put(mediaId, count - 1);
+        } else {
+            mediaSubscriptions.remove(mediaId);
+        }
+    }
+
+    synchronized boolean isSubscribed(String mediaId) {
+        return allMediaSubscriptions > 0 || mediaSubscriptions.containsKey(mediaId);
+    }
+}
@@ -0,0 +1,285 @@
+package com.vdocipher.rnbridge;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+import com.vdocipher.aegis.offline.DownloadStatus;
+import com.vdocipher.aegis.offline.VdoDownloadManager;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nullable;
+
+/**
+ * Download groups, e.g. all videos of a course, with progress aggregated over the members.
+ * <p>
+ * Progress of a group is sent at most once per interval, after any of its members changed.
+ * Group membership is saved to a file so that it survives app restarts; a media leaves its
+ * group when it is deleted.
+ */
+
+class DownloadGroups {
+    private static final String TAG = "DownloadGroups";
+
+    private static final String GROUPS_FILE_NAME = "vdoDownloadGroups.json";
+    private static final int GROUPS_FORMAT_VERSION = 1;
+    private static final int PROGRESS_INTERVAL_MS = 500;
+
+    interface StatusSource {
+        @Nullable
+        DownloadStatus get(String mediaId);
+    }
+
+    interface ProgressListener {
+        void onGroupProgress(WritableMap progress);
+    }
+
+    private final File groupsFile;
+    private final StatusSource statusSource;
+    private final ProgressListener progressListener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+
+    // guarded by this
+    private final LinkedHashMap<String, LinkedHashSet<String>> groups = new LinkedHashMap<>();
+    private final HashMap<String, String> groupOfMedia = new HashMap<>();
+    private final LinkedHashSet<String> changedGroups = new LinkedHashSet<>();
+    private boolean flushScheduled = false;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    DownloadGroups(File dataDir, StatusSource statusSource, ProgressListener progressListener) {
+        this.groupsFile = new File(dataDir, GROUPS_FILE_NAME);
+        this.statusSource = statusSource;
+        this.progressListener = progressListener;
+        diskExecutor.execute(this::loadGroups);
+    }
+
+    /**
+     * Adds a media to a group; a media is in at most one group.
+     */
+    synchronized void add(String groupId, String mediaId) {
+        String previousGroupId = groupOfMedia.put(mediaId, groupId);
+        if (previousGroupId != null && !previousGroupId.equals(groupId)) {
+            removeFromGroup(previousGroupId, mediaId);
+        }
+        LinkedHashSet<String> members = groups.get(groupId);
+        if (members == null) {
+            members = new LinkedHashSet<>();
+            groups.put(groupId, members);
+        }
+        members.add(mediaId);
+        changed(groupId);
+        saveGroups();
+    }
+
+    /**
+     * @return mediaIds of the group members, empty if there is no such group
+     */
+    synchronized String[] getMembers(String groupId) {
+        LinkedHashSet<String> members = groups.get(groupId);
+        return members != null ? members.toArray(new String[0]) : new String[0];
+    }
+
+    /**
+     * Schedules a progress update for the group of a media, if it is in one.
+     */
+    synchronized void mediaChanged(String mediaId) {
+        String groupId = groupOfMedia.get(mediaId);
+        if (groupId != null) {
+            changed(groupId);
+        }
+    }
+
+    synchronized void mediaDeleted(String mediaId) {
+        String groupId = groupOfMedia.remove(mediaId);
+        if (groupId != null) {
+            removeFromGroup(groupId, mediaId);
+            changed(groupId);
+            saveGroups();
+        }
+    }
+
+    /**
+     * @return aggregated progress of the group: member count, bytes, percent and member count
+     * per status. The percent is -1 until the size of every member is known, as bytes of members
+     * without a size would otherwise count towards it with nothing to count against.
+     */
+    synchronized WritableMap makeProgressMap(String groupId) {
+        LinkedHashSet<String> members = groups.get(groupId);
+        long bytesDownloaded = 0;
+        long totalSizeBytes = 0;
+        int pending = 0, downloading = 0, paused = 0, completed = 0, failed = 0;
+        int total = members != null ? members.size() : 0;
+        boolean sizesKnown = true;
+        if (members != null) {
+            for (String mediaId : members) {
+                DownloadStatus status = statusSource.get(mediaId);
+                if (status == null) {
+                    sizesKnown = false;
+                    continue;
+                }
+                if (status.totalSizeBytes <= 0) {
+                    sizesKnown = false;
+                }
+                bytesDownloaded += status.bytesDownloaded;
+                totalSizeBytes += status.totalSizeBytes;
+                switch (status.status) {
+                    case VdoDownloadManager.STATUS_PENDING:
+                        pending++;
+                        break;
+                    case VdoDownloadManager.STATUS_DOWNLOADING:
+                        downloading++;
+                        break;
+                    case VdoDownloadManager.STATUS_PAUSED:
+                        paused++;
+                        break;
+                    case VdoDownloadManager.STATUS_COMPLETED:
+                        completed++;
+                        break;
+                    case VdoDownloadManager.STATUS_FAILED:
+                        failed++;
+                        break;
+                }
+            }
+        }
+
+        WritableMap counts = Arguments.createMap();
+        counts.putInt("pending", pending);
+        counts.putInt("downloading", downloading);
+        counts.putInt("paused", paused);
+        counts.putInt("completed", completed);
+        counts.putInt("failed", failed);
+
+        WritableMap progress = Arguments.createMap();
+        progress.putString("groupId", groupId);
+        progress.putInt("total", total);
+        progress.putDouble("bytesDownloaded", bytesDownloaded);
+        progress.putDouble("totalSizeBytes", totalSizeBytes);
+        progress.putInt("downloadPercent", sizesKnown && totalSizeBytes > 0 ?
+                (int)(bytesDownloaded * 100 / totalSizeBytes) : -1);
+        progress.putMap("counts", counts);
+        return progress;
+    }
+
+    void release() {
+        handler.removeCallbacks(flushRunnable);
+        synchronized (this) {
+            changedGroups.clear();
+            flushScheduled = false;
+        }
+        // finishes pending saves, then ends the thread
+        diskExecutor.shutdown();
+    }
+
+    private void removeFromGroup(String groupId, String mediaId) {
+        LinkedHashSet<String> members = groups.get(groupId);
+        if (members != null) {
+            members.remove(mediaId);
+            if (members.isEmpty()) {
+                groups.remove(groupId);
+            }
+        }
+    }
+
+    private void changed(String groupId) {
+        changedGroups.add(groupId);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            handler.postDelayed(flushRunnable, PROGRESS_INTERVAL_MS);
+        }
+    }
+
+    private void flush() {
+        List<WritableMap> progressMaps = new ArrayList<>();
+        synchronized (this) {
+            flushScheduled = false;
+            for (String groupId : changedGroups) {
+                progressMaps.add(makeProgressMap(groupId));
+            }
+            changedGroups.clear();
+        }
+        // sent outside the lock, so that listeners never run while holding it
+        for (WritableMap progress : progressMaps) {
+            progressListener.onGroupProgress(progress);
+        }
+    }
+
+    private void saveGroups() {
+        final JSONObject json = new JSONObject();
+        try {
+            json.put("version", GROUPS_FORMAT_VERSION);
+            JSONObject groupsJson = new JSONObject();
+            for (Map.Entry<String, LinkedHashSet<String>> group : groups.entrySet()) {
+                groupsJson.put(group.getKey(), new JSONArray(group.getValue()));
+            }
+            json.put("groups", groupsJson);
+        } catch (JSONException e) {
+            Log.e(TAG, "failed to serialize groups: " + Log.getStackTraceString(e));
+            return;
+        }
+        diskExecutor.execute(() -> writeGroups(json));
+    }
+
+    private void loadGroups() {
+        try {
+            JSONObject json = JsonFiles.read(groupsFile, GROUPS_FORMAT_VERSION);
+            if (json == null) {
+                return;
+            }
+            JSONObject groupsJson = json.getJSONObject("groups");
+            synchronized (this) {
+                Iterator<String> groupIds = groupsJson.keys();
+                while (groupIds.hasNext()) {
+                    String groupId = groupIds.next();
+                    JSONArray members = groupsJson.getJSONArray(groupId);
+                    for (int i = 0; i < members.length(); i++) {
+                        String mediaId = members.getString(i);
+                        // media added since start take precedence
+                        if (!groupOfMedia.containsKey(mediaId)) {
+                            groupOfMedia.put(mediaId, groupId);
+                            LinkedHashSet<String> group = groups.get(groupId);
+                            if (group == null) {
+                                group = new LinkedHashSet<>();
+                                groups.put(groupId, group);
+                            }
+                            group.add(mediaId);
+                        }
+                    }
+                }
+            }
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "failed to read groups: " + e.getMessage());
+        }
+    }
+
+    private void writeGroups(JSONObject json) {
+        try {
+            JsonFiles.writeAtomically(groupsFile, json);
+        } catch (IOException e) {
+            Log.w(TAG, "failed to write groups: " + e.getMessage());
+        }
+    }
+}
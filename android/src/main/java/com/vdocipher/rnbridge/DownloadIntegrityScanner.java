@@ -0,0 +1,263 @@
+package com.vdocipher.rnbridge;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.vdocipher.aegis.offline.DownloadStatus;
+import com.vdocipher.aegis.offline.VdoDownloadManager;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+/**
+ * Detects damaged offline downloads before playback fails.
+ * <p>
+ * When a download completes, the size, modification time and CRC32 checksum of each of its
+ * files are saved in a manifest. A scan compares the files of completed downloads against their
+ * manifests on low priority background threads, several media in parallel. Only files whose
+ * size or modification time changed are checksummed again. Completed downloads without a
+ * manifest, e.g. those completed before manifests were recorded, get one on their first scan.
+ */
+
+class DownloadIntegrityScanner {
+    private static final String TAG = "DownloadIntegrity";
+
+    static final String INTEGRITY_UNKNOWN = "unknown";
+    static final String INTEGRITY_OK = "ok";
+    static final String INTEGRITY_DAMAGED = "damaged";
+
+    private static final String MANIFEST_DIRECTORY_NAME = "vdoIntegrity";
+    private static final int MANIFEST_FORMAT_VERSION = 1;
+    private static final int PARALLELISM = 2;
+
+    // latest result per mediaId; read when building download status maps
+    private final Map<String, String> results = new ConcurrentHashMap<>();
+
+    interface Listener {
+        void onChecked(String mediaId, String integrity, List<String> damagedFiles);
+    }
+
+    interface ScanCallback {
+        void onScanComplete(int scanned, int damaged);
+    }
+
+    private final File manifestDir;
+    private final Listener listener;
+    private final ExecutorService executor = Executors.newFixedThreadPool(PARALLELISM, runnable ->
+            new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "VdoIntegrityScanner"));
+
+    DownloadIntegrityScanner(File dataDir, Listener listener) {
+        this.manifestDir = new File(dataDir, MANIFEST_DIRECTORY_NAME);
+        this.listener = listener;
+    }
+
+    /**
+     * @return integrity of a download from the latest check: ok, damaged or unknown
+     */
+    String integrityOf(String mediaId) {
+        String integrity = results.get(mediaId);
+        return integrity != null ? integrity : INTEGRITY_UNKNOWN;
+    }
+
+    /**
+     * Saves the manifest of a download that has just completed.
+     */
+    void recordCompleted(String mediaId, DownloadStatus status) {
+        if (status.localStorageFolder == null) {
+            return;
+        }
+        executor.execute(() -> recordManifest(mediaId, status.localStorageFolder));
+    }
+
+    /**
+     * Checks all completed downloads that have a manifest.
+     *
+     * @param statuses statuses of all downloads
+     */
+    void scan(List<DownloadStatus> statuses, @Nullable ScanCallback callback) {
+        List<DownloadStatus> completed = new ArrayList<>();
+        for (DownloadStatus status : statuses) {
+            if (status.status == VdoDownloadManager.STATUS_COMPLETED && status.localStorageFolder != null) {
+                completed.add(status);
+            }
+        }
+        if (completed.isEmpty()) {
+            if (callback != null) {
+                callback.onScanComplete(0, 0);
+            }
+            return;
+        }
+        final AtomicInteger remaining = new AtomicInteger(completed.size());
+        final AtomicInteger damaged = new AtomicInteger();
+        for (DownloadStatus status : completed) {
+            executor.execute(() -> {
+                if (INTEGRITY_DAMAGED.equals(check(status.mediaInfo.mediaId, status.localStorageFolder))) {
+                    damaged.incrementAndGet();
+                }
+                if (remaining.decrementAndGet() == 0 && callback != null) {
+                    callback.onScanComplete(completed.size(), damaged.get());
+                }
+            });
+        }
+    }
+
+    void release() {
+        executor.shutdownNow();
+    }
+
+    void forget(String mediaId) {
+        results.remove(mediaId);
+        executor.execute(() -> manifestFile(mediaId).delete());
+    }
+
+    /**
+     * Saves the manifest of the current files of a download, taking them as intact.
+     *
+     * @return ok, or unknown if the manifest could not be saved
+     */
+    private String recordManifest(String mediaId, String folder) {
+        JSONObject files = new JSONObject();
+        try {
+            List<File> folderFiles = new ArrayList<>();
+            listFiles(new File(folder), folderFiles);
+            for (File file : folderFiles) {
+                files.put(relativePath(folder, file),
+                        new JSONArray().put(file.length()).put(file.lastModified()).put(checksum(file)));
+            }
+            writeManifest(mediaId, folder, files);
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "failed to record manifest for " + mediaId + ": " + e.getMessage());
+            return INTEGRITY_UNKNOWN;
+        }
+        results.put(mediaId, INTEGRITY_OK);
+        return INTEGRITY_OK;
+    }
+
+    private String check(String mediaId, String folder) {
+        JSONObject manifest = readManifest(mediaId);
+        JSONObject files = manifest != null && folder.equals(manifest.optString("folder")) ?
+                manifest.optJSONObject("files") : null;
+        if (files == null) {
+            // no baseline to compare with yet
+            return recordManifest(mediaId, folder);
+        }
+
+        List<String> damagedFiles = new ArrayList<>();
+        boolean manifestChanged = false;
+        try {
+            Iterator<String> paths = files.keys();
+            while (paths.hasNext()) {
+                String path = paths.next();
+                JSONArray recorded = files.getJSONArray(path);
+                File file = new File(folder, path);
+                if (!file.isFile() || file.length() != recorded.getLong(0)) {
+                    damagedFiles.add(path);
+                    continue;
+                }
+                if (file.lastModified() == recorded.getLong(1)) {
+                    // unchanged since last checked
+                    continue;
+                }
+                if (checksum(file) != recorded.getLong(2)) {
+                    damagedFiles.add(path);
+                } else {
+                    // same content, only touched; skip the checksum next time
+                    recorded.put(1, file.lastModified());
+                    manifestChanged = true;
+                }
+            }
+            if (manifestChanged) {
+                writeManifest(mediaId, folder, files);
+            }
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "failed to check " + mediaId + ": " + e.getMessage());
+            return INTEGRITY_UNKNOWN;
+        }
+
+        String integrity = damagedFiles.isEmpty() ? INTEGRITY_OK : INTEGRITY_DAMAGED;
+        String previous = results.put(mediaId, integrity);
+        if (!integrity.equals(previous)) {
+            if (!damagedFiles.isEmpty()) {
+                Log.w(TAG, mediaId + " damaged: " + damagedFiles);
+            }
+            listener.onChecked(mediaId, integrity, damagedFiles);
+        }
+        return integrity;
+    }
+
+    private static void listFiles(File file, List<File> out) {
+        if (file.isFile()) {
+            out.add(file);
+            return;
+        }
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                listFiles(child, out);
+            }
+        }
+    }
+
+    private static String relativePath(String folder, File file) {
+        String path = file.getPath();
+        return path.startsWith(folder) ? path.substring(folder.length()).replaceFirst("^/", "") : path;
+    }
+
+    private static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, count);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private File manifestFile(String mediaId) {
+        return new File(manifestDir, mediaId.replaceAll("[^A-Za-z0-9_-]", "_") + ".json");
+    }
+
+    @Nullable
+    private JSONObject readManifest(String mediaId) {
+        try {
+            return JsonFiles.read(manifestFile(mediaId), MANIFEST_FORMAT_VERSION);
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "failed to read manifest: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeManifest(String mediaId, String folder, JSONObject files) throws IOException, JSONException {
+        if (!manifestDir.isDirectory() && !manifestDir.mkdirs()) {
+            throw new IOException("failed to create manifest directory");
+        }
+        JSONObject manifest = new JSONObject();
+        manifest.put("version", MANIFEST_FORMAT_VERSION);
+        manifest.put("folder", folder);
+        manifest.put("files", files);
+
+        JsonFiles.writeAtomically(manifestFile(mediaId), manifest);
+    }
+}
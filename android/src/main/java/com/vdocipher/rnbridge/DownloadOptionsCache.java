@@ -0,0 +1,134 @@
+package com.vdocipher.rnbridge;
+
+import com.vdocipher.aegis.offline.DownloadOptions;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Thread-safe cache of {@link DownloadOptions} keyed by otp and playbackInfo.
+ * <p>
+ * Recently fetched options are kept in memory, up to a fixed count, and reused for a fixed
+ * time when the same options are requested again. Options handed out to js, whose playbackInfo
+ * js uses as the nativeId to enqueue them, are kept separately without expiry, so that they can
+ * be enqueued however long after they were fetched, until they are enqueued or until too many
+ * other options have been handed out since.
+ */
+
+class DownloadOptionsCache {
+    static final int DEFAULT_MAX_ENTRIES = 32;
+    static final long DEFAULT_TTL_MS = 30 * 60 * 1000;
+    static final int DEFAULT_MAX_HANDED_OUT = 256;
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final int maxHandedOut;
+
+    private final LinkedHashMap<String, Entry> memoryCache;
+    // guarded by memoryCache
+    private final LinkedHashMap<String, DownloadOptions> handedOut;
+
+    DownloadOptionsCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MS, DEFAULT_MAX_HANDED_OUT);
+    }
+
+    DownloadOptionsCache(int maxEntries, long ttlMs, int maxHandedOut) {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.maxHandedOut = maxHandedOut;
+        memoryCache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > DownloadOptionsCache.this.maxEntries;
+            }
+        };
+        handedOut = new LinkedHashMap<String, DownloadOptions>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DownloadOptions> eldest) {
+                return size() > DownloadOptionsCache.this.maxHandedOut;
+            }
+        };
+    }
+
+    /**
+     * @return unexpired options fetched with the otp and playbackInfo, or null if there are none
+     */
+    @Nullable
+    DownloadOptions get(String otp, String playbackInfo) {
+        String key = cacheKey(otp, playbackInfo);
+        long now = System.currentTimeMillis();
+        synchronized (memoryCache) {
+            Entry entry = memoryCache.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt > now) {
+                return entry.options;
+            }
+            memoryCache.remove(key);
+            return null;
+        }
+    }
+
+    void put(String otp, String playbackInfo, DownloadOptions options) {
+        final Entry entry = new Entry(options, System.currentTimeMillis() + ttlMs);
+        synchronized (memoryCache) {
+            memoryCache.put(cacheKey(otp, playbackInfo), entry);
+            evictExpired(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Keeps options that were handed out to js until they are enqueued.
+     */
+    void handOut(String nativeId, DownloadOptions options) {
+        synchronized (memoryCache) {
+            handedOut.put(nativeId, options);
+        }
+    }
+
+    /**
+     * @return options handed out to js with the nativeId, or null if there are none
+     */
+    @Nullable
+    DownloadOptions getHandedOut(String nativeId) {
+        synchronized (memoryCache) {
+            return handedOut.get(nativeId);
+        }
+    }
+
+    /**
+     * Drops options handed out to js once they have been enqueued.
+     */
+    void removeHandedOut(String nativeId) {
+        synchronized (memoryCache) {
+            handedOut.remove(nativeId);
+        }
+    }
+
+    private static String cacheKey(@Nullable String otp, String playbackInfo) {
+        return otp + "\n" + playbackInfo;
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Entry> entries = memoryCache.values().iterator();
+        while (entries.hasNext()) {
+            if (entries.next().expiresAt <= now) {
+                entries.remove();
+            }
+        }
+    }
+
+    private static class Entry {
+        final DownloadOptions options;
+        final long expiresAt;
+
+        Entry(DownloadOptions options, long expiresAt) {
+            this.options = options;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
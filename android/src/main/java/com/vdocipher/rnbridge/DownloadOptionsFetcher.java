@@ -0,0 +1,119 @@
+package com.vdocipher.rnbridge;
+
+import android.util.Log;
+
+import com.vdocipher.aegis.media.ErrorCodes;
+import com.vdocipher.aegis.media.ErrorDescription;
+import com.vdocipher.aegis.offline.DownloadOptions;
+import com.vdocipher.aegis.offline.OptionsDownloader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Fetches {@link DownloadOptions} with a bounded number of requests in flight.
+ * <p>
+ * Concurrent fetches for the same playbackInfo share a single network request.
+ */
+
+class DownloadOptionsFetcher {
+    private static final String TAG = "DownloadOptionsFetcher";
+
+    static final int DEFAULT_MAX_CONCURRENT = 4;
+
+    interface Callback {
+        void onOptionsReceived(String playbackInfo, DownloadOptions options);
+
+        void onOptionsNotReceived(String playbackInfo, ErrorDescription errorDescription);
+    }
+
+    private final int maxConcurrent;
+
+    // guarded by this
+    private final HashMap<String, List<Callback>> waiting = new HashMap<>();
+    private final ArrayDeque<String[]> queue = new ArrayDeque<>();
+    private int running = 0;
+
+    DownloadOptionsFetcher(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    void fetch(String otp, String playbackInfo, Callback callback) {
+        synchronized (this) {
+            List<Callback> callbacks = waiting.get(playbackInfo);
+            if (callbacks != null) {
+                // already queued or in flight
+                callbacks.add(callback);
+                return;
+            }
+            callbacks = new ArrayList<>();
+            callbacks.add(callback);
+            waiting.put(playbackInfo, callbacks);
+            queue.add(new String[]{otp, playbackInfo});
+        }
+        startNext();
+    }
+
+    private void startNext() {
+        while (true) {
+            final String otp;
+            final String playbackInfo;
+            synchronized (this) {
+                if (running >= maxConcurrent || queue.isEmpty()) {
+                    return;
+                }
+                String[] request = queue.poll();
+                otp = request[0];
+                playbackInfo = request[1];
+                running++;
+            }
+            start(otp, playbackInfo);
+        }
+    }
+
+    private void start(String otp, String playbackInfo) {
+        OptionsDownloader optionsDownloader = new OptionsDownloader();
+        try {
+            optionsDownloader.downloadOptionsWithOtp(otp, playbackInfo, new OptionsDownloader.Callback() {
+                @Override
+                public void onOptionsReceived(DownloadOptions options) {
+                    complete(playbackInfo, options, null);
+                }
+
+                @Override
+                public void onOptionsNotReceived(ErrorDescription errorDescription) {
+                    complete(playbackInfo, null, errorDescription);
+                }
+            });
+        } catch (RuntimeException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            complete(playbackInfo, null, new ErrorDescription(
+                    ErrorCodes.INVALID_PLAYBACK_INFO, "Invalid playbackInfo", -1));
+        }
+    }
+
+    private void complete(String playbackInfo, @Nullable DownloadOptions options,
+                          @Nullable ErrorDescription errorDescription) {
+        List<Callback> callbacks;
+        synchronized (this) {
+            running--;
+            callbacks = waiting.remove(playbackInfo);
+        }
+        startNext();
+
+        if (callbacks == null) {
+            return;
+        }
+        for (Callback callback : callbacks) {
+            if (options != null) {
+                callback.onOptionsReceived(playbackInfo, options);
+            } else {
+                callback.onOptionsNotReceived(playbackInfo, errorDescription);
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.vdocipher.rnbridge;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.vdocipher.aegis.offline.DownloadStatus;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Merges download progress updates, keeping only the latest {@link DownloadStatus} per media,
+ * and hands all of them over together once per interval.
+ */
+
+class DownloadProgressMerger {
+
+    interface FlushListener {
+        /**
+         * @param statuses latest status of each media changed since the previous flush, in the
+         *                 order the media first changed
+         */
+        void onFlush(Map<String, DownloadStatus> statuses);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final FlushListener flushListener;
+
+    private final Object lock = new Object();
+    private LinkedHashMap<String, DownloadStatus> pending = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+    private volatile int intervalMs = 0;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    DownloadProgressMerger(FlushListener flushListener) {
+        this.flushListener = flushListener;
+    }
+
+    /**
+     * @param intervalMs interval between flushes; 0 flushes every update right away
+     */
+    void setInterval(int intervalMs) {
+        this.intervalMs = Math.max(0, intervalMs);
+        if (this.intervalMs == 0) {
+            flush();
+        }
+    }
+
+    /**
+     * @return true if the update was merged, false if the caller should send it right away
+     */
+    boolean changed(String mediaId, DownloadStatus downloadStatus) {
+        if (intervalMs == 0) {
+            return false;
+        }
+        synchronized (lock) {
+            pending.put(mediaId, downloadStatus);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                handler.postDelayed(flushRunnable, intervalMs);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sends an event that makes any pending update for the same media stale, e.g. on completion,
+     * failure or deletion. The pending update is dropped and the event is sent right away, without
+     * racing a flush in progress.
+     */
+    void sendTerminal(String mediaId, Runnable sendEvent) {
+        synchronized (lock) {
+            pending.remove(mediaId);
+            sendEvent.run();
+        }
+    }
+
+    void release() {
+        handler.removeCallbacks(flushRunnable);
+        synchronized (lock) {
+            pending.clear();
+            flushScheduled = false;
+        }
+    }
+
+    private void flush() {
+        synchronized (lock) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            Map<String, DownloadStatus> statuses = pending;
+            pending = new LinkedHashMap<>();
+            flushListener.onFlush(statuses);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.vdocipher.rnbridge;
+
+import android.util.Log;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+/**
+ * Removes downloads on a background thread, so that deleting large downloads never blocks the
+ * calling thread.
+ * <p>
+ * Removals requested by the app run one at a time, as the download manager does not document
+ * that removal is safe to call concurrently. Evictions run on a thread of their own, so that
+ * freeing space for a download never waits behind a large removal requested by the user.
+ */
+
+class DownloadRemover {
+    private static final String TAG = "DownloadRemover";
+
+    /**
+     * Removes the downloaded files of a single media; implemented with the
+     * {@code VdoDownloadManager} in the app.
+     */
+    interface Deleter {
+        /**
+         * Blocks until the media is removed.
+         *
+         * @throws RuntimeException if the media could not be removed, including when it is
+         * still present afterwards
+         */
+        void delete(String mediaId);
+    }
+
+    interface Listener {
+        /**
+         * @param error null if the media was removed
+         */
+        void onRemoved(String mediaId, int done, int total, @Nullable String error);
+
+        void onComplete(int total, int failed);
+    }
+
+    private final Deleter deleter;
+    private final ExecutorService executor;
+    private final ExecutorService evictionExecutor;
+
+    DownloadRemover(Deleter deleter) {
+        this.deleter = deleter;
+        this.executor = Executors.newSingleThreadExecutor();
+        this.evictionExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * Finishes removals in progress, then ends the worker threads.
+     */
+    void release() {
+        executor.shutdown();
+        evictionExecutor.shutdown();
+    }
+
+    void remove(String[] mediaIds, Listener listener) {
+        remove(executor, mediaIds, listener);
+    }
+
+    /**
+     * Same as {@link #remove(String[], Listener)}, for removals that free space for downloads.
+     */
+    void evict(String[] mediaIds, Listener listener) {
+        remove(evictionExecutor, mediaIds, listener);
+    }
+
+    private void remove(Executor executor, String[] mediaIds, Listener listener) {
+        final int total = mediaIds.length;
+        if (total == 0) {
+            listener.onComplete(0, 0);
+            return;
+        }
+        final AtomicInteger done = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        for (String mediaId : mediaIds) {
+            executor.execute(() -> {
+                String error = null;
+                try {
+                    deleter.delete(mediaId);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "error removing " + mediaId + ": " + Log.getStackTraceString(e));
+                    error = e.getClass().getName() + ": " + e.getMessage();
+                    failed.incrementAndGet();
+                }
+                int count = done.incrementAndGet();
+                listener.onRemoved(mediaId, count, total, error);
+                if (count == total) {
+                    listener.onComplete(total, failed.get());
+                }
+            });
+        }
+    }
+}
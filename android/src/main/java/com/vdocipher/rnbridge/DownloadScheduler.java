@@ -0,0 +1,339 @@
+package com.vdocipher.rnbridge;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.vdocipher.aegis.offline.DownloadStatus;
+import com.vdocipher.aegis.offline.VdoDownloadManager;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decides which scheduled downloads may run, and pauses or resumes downloads through a
+ * {@link DownloadController} to match.
+ * <p>
+ * At most {@code maxConcurrent} downloads run at a time, in order of priority and then of
+ * enqueue order. Downloads whose device conditions (unmetered network, charging) are not met
+ * stay paused. The queue is saved to a file so that it survives app restarts.
+ * <p>
+ * Decisions are made while holding the scheduler lock; the controller is then called outside
+ * the lock, in decision order, on a single thread (the main thread in the app).
+ */
+
+class DownloadScheduler {
+    private static final String TAG = "DownloadScheduler";
+
+    private static final String QUEUE_FILE_NAME = "vdoDownloadQueue.json";
+    private static final int QUEUE_FORMAT_VERSION = 1;
+
+    /**
+     * Pauses and resumes downloads; implemented with the {@link VdoDownloadManager} in the app.
+     */
+    interface DownloadController {
+        void pause(String[] mediaIds);
+
+        void resume(String[] mediaIds);
+    }
+
+    private final File queueFile;
+    private final DownloadController controller;
+    private final Executor controllerExecutor;
+    // loads and saves are done in order on a single background thread
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+
+    // guarded by this
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private int maxConcurrent = 0;
+    private long nextSequence = 0;
+    private boolean unmeteredNetwork = false;
+    private boolean charging = false;
+
+    DownloadScheduler(File dataDir, DownloadController controller) {
+        this(dataDir, controller, new Handler(Looper.getMainLooper())::post);
+    }
+
+    /**
+     * @param controllerExecutor runs all calls to the controller, in order
+     */
+    DownloadScheduler(File dataDir, DownloadController controller, Executor controllerExecutor) {
+        this.queueFile = new File(dataDir, QUEUE_FILE_NAME);
+        this.controller = controller;
+        this.controllerExecutor = controllerExecutor;
+        diskExecutor.execute(this::loadQueue);
+    }
+
+    /**
+     * Adds a download that has just been enqueued to the download manager.
+     *
+     * @param priority downloads with a higher priority run first
+     */
+    synchronized void add(String mediaId, int priority, boolean requiresUnmetered, boolean requiresCharging) {
+        Entry entry = new Entry(mediaId, priority, nextSequence++, requiresUnmetered, requiresCharging);
+        // the download manager starts a newly enqueued download right away
+        entry.running = true;
+        entries.put(mediaId, entry);
+        apply(reschedule());
+        saveQueue();
+    }
+
+    /**
+     * Removes a download that completed, failed or was deleted.
+     */
+    synchronized void remove(String mediaId) {
+        if (entries.remove(mediaId) != null) {
+            apply(reschedule());
+            saveQueue();
+        }
+    }
+
+    synchronized void setPriority(String mediaId, int priority) {
+        Entry entry = entries.get(mediaId);
+        if (entry != null && entry.priority != priority) {
+            entry.priority = priority;
+            apply(reschedule());
+            saveQueue();
+        }
+    }
+
+    /**
+     * Pauses downloads until resumed with this method, regardless of free slots. Downloads not
+     * added to the scheduler are paused or resumed right away.
+     */
+    synchronized void setPaused(String[] mediaIds, boolean paused) {
+        Actions actions = new Actions();
+        for (String mediaId : mediaIds) {
+            Entry entry = entries.get(mediaId);
+            if (entry != null) {
+                entry.pausedByUser = paused;
+            } else if (paused) {
+                actions.toPause.add(mediaId);
+            } else {
+                actions.toResume.add(mediaId);
+            }
+        }
+        apply(actions);
+        apply(reschedule());
+        saveQueue();
+    }
+
+    /**
+     * Finishes pending saves, then ends the disk thread.
+     */
+    void release() {
+        diskExecutor.shutdown();
+    }
+
+    /**
+     * @param maxConcurrent maximum number of downloads running at a time; 0 for no limit
+     */
+    synchronized void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = Math.max(0, maxConcurrent);
+        apply(reschedule());
+        saveQueue();
+    }
+
+    synchronized void setDeviceConditions(boolean unmeteredNetwork, boolean charging) {
+        if (this.unmeteredNetwork != unmeteredNetwork || this.charging != charging) {
+            this.unmeteredNetwork = unmeteredNetwork;
+            this.charging = charging;
+            apply(reschedule());
+        }
+    }
+
+    /**
+     * Matches the saved queue to the current downloads after a restart. Downloads that are no
+     * longer pending are dropped from the queue.
+     *
+     * @param statusList statuses of all downloads
+     */
+    void reconcile(List<DownloadStatus> statusList) {
+        // runs after the saved queue has been loaded
+        diskExecutor.execute(() -> {
+            synchronized (DownloadScheduler.this) {
+                HashMap<String, DownloadStatus> statuses = new HashMap<>();
+                for (DownloadStatus status : statusList) {
+                    statuses.put(status.mediaInfo.mediaId, status);
+                }
+                List<String> finished = new ArrayList<>();
+                for (Entry entry : entries.values()) {
+                    DownloadStatus status = statuses.get(entry.mediaId);
+                    if (status == null
+                            || status.status == VdoDownloadManager.STATUS_COMPLETED
+                            || status.status == VdoDownloadManager.STATUS_FAILED) {
+                        finished.add(entry.mediaId);
+                    } else {
+                        entry.running = status.status != VdoDownloadManager.STATUS_PAUSED;
+                    }
+                }
+                for (String mediaId : finished) {
+                    entries.remove(mediaId);
+                }
+                apply(reschedule());
+                saveQueue();
+            }
+        });
+    }
+
+    /**
+     * Decides which downloads should run, and marks them as running.
+     *
+     * @return downloads to pause and to resume to match the decision
+     */
+    private Actions reschedule() {
+        List<Entry> queue = new ArrayList<>(entries.values());
+        Collections.sort(queue, (a, b) -> a.priority != b.priority ?
+                Integer.compare(b.priority, a.priority) : Long.compare(a.sequence, b.sequence));
+
+        Actions actions = new Actions();
+        int slots = maxConcurrent > 0 ? maxConcurrent : Integer.MAX_VALUE;
+        for (Entry entry : queue) {
+            boolean shouldRun = slots > 0 && conditionsMet(entry);
+            if (shouldRun) {
+                slots--;
+            }
+            if (shouldRun && !entry.running) {
+                actions.toResume.add(entry.mediaId);
+            } else if (!shouldRun && entry.running) {
+                actions.toPause.add(entry.mediaId);
+            }
+            entry.running = shouldRun;
+        }
+        return actions;
+    }
+
+    /**
+     * Hands the actions to the controller thread. Called with the lock held, so that actions
+     * reach the controller in the order they were decided; the controller runs without the lock.
+     */
+    private void apply(Actions actions) {
+        if (actions.toPause.isEmpty() && actions.toResume.isEmpty()) {
+            return;
+        }
+        final String[] toPause = actions.toPause.toArray(new String[0]);
+        final String[] toResume = actions.toResume.toArray(new String[0]);
+        controllerExecutor.execute(() -> {
+            // pause first, so the limit is not exceeded in between
+            if (toPause.length > 0) {
+                Log.i(TAG, "pausing " + actions.toPause);
+                controller.pause(toPause);
+            }
+            if (toResume.length > 0) {
+                Log.i(TAG, "resuming " + actions.toResume);
+                controller.resume(toResume);
+            }
+        });
+    }
+
+    private boolean conditionsMet(Entry entry) {
+        return !entry.pausedByUser
+                && (!entry.requiresUnmetered || unmeteredNetwork) && (!entry.requiresCharging || charging);
+    }
+
+    private void saveQueue() {
+        final JSONObject queue = new JSONObject();
+        try {
+            queue.put("version", QUEUE_FORMAT_VERSION);
+            queue.put("maxConcurrent", maxConcurrent);
+            JSONArray queueEntries = new JSONArray();
+            for (Entry entry : entries.values()) {
+                queueEntries.put(entry.toJson());
+            }
+            queue.put("entries", queueEntries);
+        } catch (JSONException e) {
+            Log.e(TAG, "failed to serialize queue: " + Log.getStackTraceString(e));
+            return;
+        }
+        diskExecutor.execute(() -> writeQueue(queue));
+    }
+
+    private void loadQueue() {
+        try {
+            JSONObject queue = JsonFiles.read(queueFile, QUEUE_FORMAT_VERSION);
+            if (queue == null) {
+                return;
+            }
+            JSONArray queueEntries = queue.getJSONArray("entries");
+            synchronized (this) {
+                if (maxConcurrent == 0) {
+                    maxConcurrent = queue.optInt("maxConcurrent");
+                }
+                for (int i = 0; i < queueEntries.length(); i++) {
+                    Entry entry = Entry.fromJson(queueEntries.getJSONObject(i));
+                    // downloads added since start take precedence
+                    if (!entries.containsKey(entry.mediaId)) {
+                        entries.put(entry.mediaId, entry);
+                    }
+                    nextSequence = Math.max(nextSequence, entry.sequence + 1);
+                }
+            }
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "failed to read queue: " + e.getMessage());
+        }
+    }
+
+    private void writeQueue(JSONObject queue) {
+        try {
+            JsonFiles.writeAtomically(queueFile, queue);
+        } catch (IOException e) {
+            Log.w(TAG, "failed to write queue: " + e.getMessage());
+        }
+    }
+
+    private static class Actions {
+        final List<String> toPause = new ArrayList<>();
+        final List<String> toResume = new ArrayList<>();
+    }
+
+    private static class Entry {
+        final String mediaId;
+        final long sequence;
+        final boolean requiresUnmetered;
+        final boolean requiresCharging;
+        int priority;
+        boolean pausedByUser;
+        // false if paused by the scheduler
+        boolean running;
+
+        Entry(String mediaId, int priority, long sequence, boolean requiresUnmetered, boolean requiresCharging) {
+            this.mediaId = mediaId;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.requiresUnmetered = requiresUnmetered;
+            this.requiresCharging = requiresCharging;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("mediaId", mediaId);
+            json.put("priority", priority);
+            json.put("sequence", sequence);
+            json.put("requiresUnmetered", requiresUnmetered);
+            json.put("requiresCharging", requiresCharging);
+            json.put("pausedByUser", pausedByUser);
+            return json;
+        }
+
+        static Entry fromJson(JSONObject json) throws JSONException {
+            Entry entry = new Entry(json.getString("mediaId"), json.optInt("priority"),
+                    json.getLong("sequence"), json.optBoolean("requiresUnmetered"),
+                    json.optBoolean("requiresCharging"));
+            entry.pausedByUser = json.optBoolean("pausedByUser");
+            // unknown until reconciled with the download statuses
+            entry.running = true;
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.vdocipher.rnbridge;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.vdocipher.aegis.offline.DownloadStatus;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Makes the download status maps sent to js: the fields of {@link DownloadStatus}, see
+ * {@link Utils#makeDownloadStatusMap(DownloadStatus)}, plus the storage volume, throughput and
+ * integrity of the download, as known by the components of the download module that owns it.
+ */
+
+class DownloadStatusMapper {
+    static final String PROP_STORAGE_VOLUME = "storageVolume";
+    static final String PROP_INTEGRITY = "integrity";
+
+    private final DownloadVolumeSelector volumeSelector;
+    private final DownloadThroughputTracker throughputTracker;
+    private final DownloadIntegrityScanner integrityScanner;
+
+    DownloadStatusMapper(DownloadVolumeSelector volumeSelector,
+                         DownloadThroughputTracker throughputTracker,
+                         DownloadIntegrityScanner integrityScanner) {
+        this.volumeSelector = volumeSelector;
+        this.throughputTracker = throughputTracker;
+        this.integrityScanner = integrityScanner;
+    }
+
+    WritableMap makeMap(DownloadStatus status) {
+        WritableMap statusMap = Utils.makeDownloadStatusMap(status);
+        statusMap.putInt(PROP_STORAGE_VOLUME, volumeIndexOf(status.localStorageFolder));
+        throughputTracker.putThroughput(statusMap, status.mediaInfo.mediaId);
+        statusMap.putString(PROP_INTEGRITY, integrityScanner.integrityOf(status.mediaInfo.mediaId));
+        return statusMap;
+    }
+
+    WritableArray makeMapArray(List<DownloadStatus> statusList) {
+        WritableArray statusArray = Arguments.createArray();
+        for (DownloadStatus status : statusList) {
+            statusArray.pushMap(makeMap(status));
+        }
+        return statusArray;
+    }
+
+    /**
+     * @return index of the volume containing the path, 0 being the primary volume, or -1 if
+     * unknown
+     */
+    int volumeIndexOf(@Nullable String path) {
+        return volumeSelector.volumeIndexOf(path);
+    }
+}
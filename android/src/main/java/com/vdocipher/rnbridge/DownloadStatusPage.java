@@ -0,0 +1,174 @@
+package com.vdocipher.rnbridge;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.vdocipher.aegis.offline.DownloadStatus;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Sorts download statuses and cuts them into pages.
+ * <p>
+ * A cursor holds the sort value and mediaId of the last status of a page, so the next page
+ * starts after it even if statuses were added or removed in the meantime.
+ */
+
+class DownloadStatusPage {
+    static final String SORT_BY_LAST_MODIFIED = "lastModifiedTimestamp";
+    static final String SORT_BY_TITLE = "title";
+    static final String SORT_BY_SIZE = "size";
+    static final String SORT_BY_STATUS = "status";
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    private final String sortBy;
+    private final boolean descending;
+    private final int limit;
+    @Nullable
+    private final String cursor;
+    private final boolean countOnly;
+
+    private DownloadStatusPage(String sortBy, boolean descending, int limit, @Nullable String cursor,
+                               boolean countOnly) {
+        this.sortBy = sortBy;
+        this.descending = descending;
+        this.limit = limit;
+        this.cursor = cursor;
+        this.countOnly = countOnly;
+    }
+
+    /**
+     * @param pageOptions optional sortBy, sortOrder ('asc' or 'desc'), limit, cursor and countOnly
+     */
+    static DownloadStatusPage fromOptions(@Nullable ReadableMap pageOptions) {
+        if (pageOptions == null) {
+            return new DownloadStatusPage(SORT_BY_LAST_MODIFIED, true, DEFAULT_LIMIT, null, false);
+        }
+        String sortBy = pageOptions.hasKey("sortBy") ? pageOptions.getString("sortBy") : SORT_BY_LAST_MODIFIED;
+        switch (sortBy) {
+            case SORT_BY_LAST_MODIFIED:
+            case SORT_BY_TITLE:
+            case SORT_BY_SIZE:
+            case SORT_BY_STATUS:
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown sortBy " + sortBy);
+        }
+        boolean descending = !pageOptions.hasKey("sortOrder") || "desc".equals(pageOptions.getString("sortOrder"));
+        int limit = pageOptions.hasKey("limit") ? pageOptions.getInt("limit") : DEFAULT_LIMIT;
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        String cursor = pageOptions.hasKey("cursor") && !pageOptions.isNull("cursor") ?
+                pageOptions.getString("cursor") : null;
+        boolean countOnly = pageOptions.hasKey("countOnly") && pageOptions.getBoolean("countOnly");
+        return new DownloadStatusPage(sortBy, descending, limit, cursor, countOnly);
+    }
+
+    /**
+     * @param statuses all statuses matching the query filters; not modified
+     * @param mapper makes the maps of the statuses in the page
+     * @return a map with totalCount and, unless counting only, the page of statuses and the
+     * cursor for the next page, or null if this is the last page
+     */
+    WritableMap makePage(List<DownloadStatus> statuses, DownloadStatusMapper mapper) {
+        WritableMap page = Arguments.createMap();
+        page.putInt("totalCount", statuses.size());
+        if (countOnly) {
+            return page;
+        }
+
+        List<DownloadStatus> sorted = new ArrayList<>(statuses);
+        Collections.sort(sorted, comparator());
+
+        int start = 0;
+        if (cursor != null) {
+            Object[] after = decodeCursor(cursor);
+            while (start < sorted.size() && compareToCursor(sorted.get(start), after) <= 0) {
+                start++;
+            }
+        }
+        int end = Math.min(sorted.size(), start + limit);
+
+        WritableArray pageStatuses = Arguments.createArray();
+        for (int i = start; i < end; i++) {
+            pageStatuses.pushMap(mapper.makeMap(sorted.get(i)));
+        }
+        page.putArray("statuses", pageStatuses);
+        if (end < sorted.size()) {
+            page.putString("nextCursor", encodeCursor(sorted.get(end - 1)));
+        } else {
+            page.putNull("nextCursor");
+        }
+        return page;
+    }
+
+    private Comparator<DownloadStatus> comparator() {
+        return (a, b) -> {
+            int result = compareValues(sortValue(a), sortValue(b));
+            if (result == 0) {
+                result = a.mediaInfo.mediaId.compareTo(b.mediaInfo.mediaId);
+            }
+            return descending ? -result : result;
+        };
+    }
+
+    private int compareToCursor(DownloadStatus status, Object[] cursorValues) {
+        int result = compareValues(sortValue(status), cursorValues[0]);
+        if (result == 0) {
+            result = status.mediaInfo.mediaId.compareTo((String)cursorValues[1]);
+        }
+        return descending ? -result : result;
+    }
+
+    private Object sortValue(DownloadStatus status) {
+        switch (sortBy) {
+            case SORT_BY_TITLE:
+                return status.mediaInfo.title != null ? status.mediaInfo.title : "";
+            case SORT_BY_SIZE:
+                return (long)status.totalSizeBytes;
+            case SORT_BY_STATUS:
+                return (long)status.status;
+            default:
+                return status.lastModifiedTimestamp;
+        }
+    }
+
+    private static int compareValues(Object a, Object b) {
+        if (a instanceof String && b instanceof String) {
+            return ((String)a).compareToIgnoreCase((String)b);
+        }
+        return Long.compare(((Number)a).longValue(), ((Number)b).longValue());
+    }
+
+    private String encodeCursor(DownloadStatus status) {
+        JSONArray values = new JSONArray();
+        values.put(sortBy);
+        values.put(sortValue(status));
+        values.put(status.mediaInfo.mediaId);
+        return values.toString();
+    }
+
+    private Object[] decodeCursor(String cursor) {
+        try {
+            JSONArray values = new JSONArray(cursor);
+            if (!sortBy.equals(values.getString(0))) {
+                throw new IllegalArgumentException("cursor does not match sortBy");
+            }
+            Object value = values.get(1);
+            return new Object[]{value instanceof String ? value : values.getLong(1), values.getString(2)};
+        } catch (JSONException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package com.vdocipher.rnbridge;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.vdocipher.aegis.media.MediaInfo;
+import com.vdocipher.aegis.offline.DownloadStatus;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nullable;
+
+import static com.vdocipher.rnbridge.Utils.downloadStatusIntFromName;
+import static com.vdocipher.rnbridge.Utils.downloadStatusNameFromInt;
+import static com.vdocipher.rnbridge.Utils.mediaInfoTypeName;
+
+/**
+ * In-memory copy of the status of all downloads, kept current from download events.
+ * <p>
+ * The store is seeded once from a full {@code VdoDownloadManager} query. Its contents are
+ * checkpointed to an index file, so that the last known statuses can be served at cold start
+ * until seeding completes. Only downloads being added, removed or changing status trigger a
+ * checkpoint, so the progress of running downloads in the index may lag behind.
+ * <p>
+ * Each change after seeding gets a sequence number, and recent changes are kept so that a
+ * client can catch up on the changes since a sequence number instead of querying everything.
+ */
+
+class DownloadStatusStore {
+    private static final String TAG = "DownloadStatusStore";
+
+    private static final String INDEX_FILE_NAME = "vdoDownloadIndex.json";
+    private static final int INDEX_FORMAT_VERSION = 1;
+    private static final long CHECKPOINT_DELAY_MS = 2000;
+    private static final int MAX_CHANGES = 1024;
+
+    static final String CHANGE_INSERT = "insert";
+    static final String CHANGE_UPDATE = "update";
+    static final String CHANGE_REMOVE = "remove";
+
+    private final File indexFile;
+    private final DownloadStatusMapper mapper;
+    private final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // guarded by this
+    private final LinkedHashMap<String, DownloadStatus> statuses = new LinkedHashMap<>();
+    // media deleted while the seed query was running
+    private final Set<String> deletedBeforeSeed = new HashSet<>();
+    private boolean seeded = false;
+    @Nullable
+    private JSONArray indexEntries = null;
+    private boolean checkpointScheduled = false;
+    private long sequence = 0;
+    private final ArrayDeque<Change> changes = new ArrayDeque<>();
+
+    private final Runnable checkpointRunnable = new Runnable() {
+        @Override
+        public void run() {
+            checkpoint();
+        }
+    };
+
+    DownloadStatusStore(File dataDir, DownloadStatusMapper mapper) {
+        indexFile = new File(dataDir, INDEX_FILE_NAME);
+        this.mapper = mapper;
+        diskExecutor.execute(this::loadIndex);
+    }
+
+    /**
+     * Seeds the store with the result of a full query. Statuses received from events while
+     * the query was running take precedence.
+     */
+    synchronized void seed(List<DownloadStatus> statusList) {
+        for (DownloadStatus status : statusList) {
+            String mediaId = status.mediaInfo.mediaId;
+            if (deletedBeforeSeed.contains(mediaId)) {
+                continue;
+            }
+            DownloadStatus current = statuses.get(mediaId);
+            if (current == null || current.lastModifiedTimestamp < status.lastModifiedTimestamp) {
+                statuses.put(mediaId, status);
+            }
+        }
+        deletedBeforeSeed.clear();
+        // earlier changes do not apply to the seeded contents
+        changes.clear();
+        sequence++;
+        seeded = true;
+        indexEntries = null;
+        scheduleCheckpoint();
+    }
+
+    synchronized long getSequence() {
+        return sequence;
+    }
+
+    synchronized boolean isSeeded() {
+        return seeded;
+    }
+
+    /**
+     * @return the change, with its sequence number
+     */
+    synchronized Change update(String mediaId, DownloadStatus downloadStatus) {
+        DownloadStatus previous = statuses.put(mediaId, downloadStatus);
+        // progress alone does not warrant rewriting the index
+        if (previous == null || previous.status != downloadStatus.status) {
+            scheduleCheckpoint();
+        }
+        return addChange(previous == null ? CHANGE_INSERT : CHANGE_UPDATE, mediaId);
+    }
+
+    /**
+     * @return the change, with its sequence number
+     */
+    synchronized Change remove(String mediaId) {
+        statuses.remove(mediaId);
+        if (!seeded) {
+            deletedBeforeSeed.add(mediaId);
+        }
+        scheduleCheckpoint();
+        return addChange(CHANGE_REMOVE, mediaId);
+    }
+
+    /**
+     * @return the current sequence number and the changes since the given sequence number,
+     * coalesced to one per media, or null if the store is not seeded yet. If those changes are
+     * no longer known, reset is true and the changes insert all current statuses.
+     */
+    @Nullable
+    synchronized WritableMap changesSince(long since) {
+        if (!seeded) {
+            return null;
+        }
+        boolean reset = since > sequence
+                || (since < sequence && (changes.isEmpty() || changes.peekFirst().sequence > since + 1));
+
+        WritableArray changeArray = Arguments.createArray();
+        if (reset) {
+            for (Map.Entry<String, DownloadStatus> entry : statuses.entrySet()) {
+                changeArray.pushMap(makeChangeMap(CHANGE_INSERT, entry.getKey(), entry.getValue()));
+            }
+        } else {
+            // first and last change type of each media, in order of first change
+            LinkedHashMap<String, String[]> changeTypes = new LinkedHashMap<>();
+            for (Change change : changes) {
+                if (change.sequence <= since) {
+                    continue;
+                }
+                String[] types = changeTypes.get(change.mediaId);
+                if (types == null) {
+                    changeTypes.put(change.mediaId, new String[]{change.type, change.type});
+                } else {
+                    types[1] = change.type;
+                }
+            }
+            for (Map.Entry<String, String[]> entry : changeTypes.entrySet()) {
+                String first = entry.getValue()[0];
+                String last = entry.getValue()[1];
+                DownloadStatus status = statuses.get(entry.getKey());
+                if (CHANGE_REMOVE.equals(last) || status == null) {
+                    if (!CHANGE_INSERT.equals(first)) {
+                        changeArray.pushMap(makeChangeMap(CHANGE_REMOVE, entry.getKey(), null));
+                    }
+                } else {
+                    String type = CHANGE_INSERT.equals(first) ? CHANGE_INSERT : CHANGE_UPDATE;
+                    changeArray.pushMap(makeChangeMap(type, entry.getKey(), status));
+                }
+            }
+        }
+
+        WritableMap result = Arguments.createMap();
+        result.putDouble("sequence", sequence);
+        result.putBoolean("reset", reset);
+        result.putArray("changes", changeArray);
+        return result;
+    }
+
+    WritableMap makeChangeMap(String type, String mediaId, @Nullable DownloadStatus status) {
+        WritableMap change = Arguments.createMap();
+        change.putString("type", type);
+        change.putString("mediaId", mediaId);
+        if (status != null) {
+            change.putMap("downloadStatus", mapper.makeMap(status));
+        }
+        return change;
+    }
+
+    @Nullable
+    synchronized DownloadStatus get(String mediaId) {
+        return statuses.get(mediaId);
+    }
+
+    /**
+     * @return statuses matching the filter, or null if the store is not seeded yet
+     */
+    @Nullable
+    synchronized List<DownloadStatus> filter(StatusFilter filter) {
+        if (!seeded) {
+            return null;
+        }
+        List<DownloadStatus> result = new ArrayList<>();
+        for (DownloadStatus status : statuses.values()) {
+            if (filter.matches(status.mediaInfo.mediaId, status.status)) {
+                result.add(status);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return statuses matching the filter, from memory once seeded, or from the index file
+     * before that; null if neither is available yet
+     */
+    @Nullable
+    synchronized WritableArray query(StatusFilter filter) {
+        if (seeded) {
+            WritableArray result = Arguments.createArray();
+            for (DownloadStatus status : statuses.values()) {
+                if (filter.matches(status.mediaInfo.mediaId, status.status)) {
+                    result.pushMap(mapper.makeMap(status));
+                }
+            }
+            return result;
+        }
+        if (indexEntries == null) {
+            return null;
+        }
+        WritableArray result = Arguments.createArray();
+        for (int i = 0; i < indexEntries.length(); i++) {
+            JSONObject entry = indexEntries.optJSONObject(i);
+            JSONObject mediaInfo = entry != null ? entry.optJSONObject("mediaInfo") : null;
+            if (mediaInfo == null || deletedBeforeSeed.contains(mediaInfo.optString("mediaId"))) {
+                continue;
+            }
+            try {
+                int status = downloadStatusIntFromName(entry.optString("status"));
+                if (filter.matches(mediaInfo.optString("mediaId"), status)) {
+                    result.pushMap(makeMapFromJson(entry));
+                }
+            } catch (IllegalArgumentException | JSONException e) {
+                Log.w(TAG, "skipping bad index entry: " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    void release() {
+        handler.removeCallbacks(checkpointRunnable);
+        synchronized (this) {
+            if (checkpointScheduled) {
+                checkpointScheduled = false;
+                checkpoint();
+            }
+        }
+        // runs the final checkpoint, then ends the thread
+        diskExecutor.shutdown();
+    }
+
+    private Change addChange(String type, String mediaId) {
+        Change change = new Change(++sequence, type, mediaId);
+        if (seeded) {
+            changes.addLast(change);
+            if (changes.size() > MAX_CHANGES) {
+                changes.removeFirst();
+            }
+        }
+        return change;
+    }
+
+    private void scheduleCheckpoint() {
+        if (seeded && !checkpointScheduled) {
+            checkpointScheduled = true;
+            handler.postDelayed(checkpointRunnable, CHECKPOINT_DELAY_MS);
+        }
+    }
+
+    private void checkpoint() {
+        final List<DownloadStatus> snapshot;
+        synchronized (this) {
+            checkpointScheduled = false;
+            snapshot = new ArrayList<>(statuses.values());
+        }
+        // serialized on the disk thread, off the main thread and the store lock
+        diskExecutor.execute(() -> {
+            JSONArray entries = new JSONArray();
+            try {
+                for (DownloadStatus status : snapshot) {
+                    entries.put(toJson(status));
+                }
+            } catch (JSONException e) {
+                Log.e(TAG, "failed to serialize index: " + Log.getStackTraceString(e));
+                return;
+            }
+            writeIndex(entries);
+        });
+    }
+
+    private void loadIndex() {
+        try {
+            JSONObject index = JsonFiles.read(indexFile, INDEX_FORMAT_VERSION);
+            if (index == null) {
+                return;
+            }
+            JSONArray entries = index.getJSONArray("statuses");
+            synchronized (this) {
+                if (!seeded) {
+                    indexEntries = entries;
+                }
+            }
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "failed to read index: " + e.getMessage());
+        }
+    }
+
+    private void writeIndex(JSONArray entries) {
+        try {
+            JSONObject index = new JSONObject();
+            index.put("version", INDEX_FORMAT_VERSION);
+            index.put("statuses", entries);
+            JsonFiles.writeAtomically(indexFile, index);
+        } catch (IOException | JSONException e) {
+            Log.w(TAG, "failed to write index: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Same shape as {@link DownloadStatusMapper#makeMap(DownloadStatus)}, without the fields that
+     * are only known while the app runs.
+     */
+    private JSONObject toJson(DownloadStatus status) throws JSONException {
+        MediaInfo mediaInfo = status.mediaInfo;
+        JSONObject mediaInfoJson = new JSONObject();
+        mediaInfoJson.put("mediaId", mediaInfo.mediaId);
+        mediaInfoJson.put("type", mediaInfoTypeName(mediaInfo.type));
+        mediaInfoJson.put("title", mediaInfo.title);
+        mediaInfoJson.put("description", mediaInfo.description);
+        mediaInfoJson.put("duration", mediaInfo.duration);
+
+        JSONObject statusJson = new JSONObject();
+        statusJson.put("mediaInfo", mediaInfoJson);
+        statusJson.put("localStorageFolder", status.localStorageFolder);
+        statusJson.put("status", downloadStatusNameFromInt(status.status));
+        statusJson.put("reason", status.reason);
+        statusJson.put("reasonDescription", status.reasonDescription);
+        statusJson.put("totalSizeBytes", status.totalSizeBytes);
+        statusJson.put("bytesDownloaded", status.bytesDownloaded);
+        statusJson.put("downloadPercent", status.downloadPercent);
+        statusJson.put("poster", status.poster);
+        statusJson.put("lastModifiedTimestamp", status.lastModifiedTimestamp);
+        statusJson.put(DownloadStatusMapper.PROP_STORAGE_VOLUME, mapper.volumeIndexOf(status.localStorageFolder));
+        return statusJson;
+    }
+
+    private static WritableMap makeMapFromJson(JSONObject json) throws JSONException {
+        WritableMap map = Arguments.createMap();
+        Iterator<String> keys = json.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            Object value = json.get(key);
+            if (value instanceof JSONObject) {
+                map.putMap(key, makeMapFromJson((JSONObject)value));
+            } else if (value instanceof String) {
+                map.putString(key, (String)value);
+            } else if (value instanceof Boolean) {
+                map.putBoolean(key, (Boolean)value);
+            } else if (value instanceof Integer) {
+                map.putInt(key, (Integer)value);
+            } else if (value instanceof Number) {
+                map.putDouble(key, ((Number)value).doubleValue());
+            } else {
+                map.putNull(key);
+            }
+        }
+        return map;
+    }
+
+    static class Change {
+        final long sequence;
+        final String type;
+        final String mediaId;
+
+        Change(long sequence, String type, String mediaId) {
+            this.sequence = sequence;
+            this.type = type;
+            this.mediaId = mediaId;
+        }
+    }
+
+    /**
+     * Filters statuses by mediaId and status; an empty filter matches everything.
+     */
+    static class StatusFilter {
+        @Nullable
+        private final Set<String> mediaIds;
+        @Nullable
+        private final Set<Integer> statuses;
+
+        StatusFilter(@Nullable String[] mediaIds, @Nullable int[] statuses) {
+            this.mediaIds = mediaIds != null && mediaIds.length > 0 ? new HashSet<>(Arrays.asList(mediaIds)) : null;
+            if (statuses != null && statuses.length > 0) {
+                List<Integer> list = new ArrayList<>(statuses.length);
+                for (int status : statuses) {
+                    list.add(status);
+                }
+                this.statuses = new HashSet<>(list);
+            } else {
+                this.statuses = null;
+            }
+        }
+
+        boolean matches(String mediaId, int status) {
+            return (mediaIds == null || mediaIds.contains(mediaId))
+                    && (statuses == null || statuses.contains(status));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.vdocipher.rnbridge;
+
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.WritableMap;
+import com.vdocipher.aegis.offline.DownloadStatus;
+import com.vdocipher.aegis.offline.VdoDownloadManager;
+
+import java.util.HashMap;
+
+/**
+ * Estimates the download speed of each download from the changes in downloaded bytes between
+ * status updates, smoothed with an exponentially weighted moving average.
+ * <p>
+ * A download is stalled if it is downloading but its downloaded bytes have not changed for a
+ * while.
+ */
+
+class DownloadThroughputTracker {
+    // time constant of the moving average; older samples lose weight by 1/e per time constant
+    private static final double SMOOTHING_TIME_MS = 5000;
+    private static final long STALL_TIMEOUT_MS = 15000;
+
+    // guarded by this
+    private final HashMap<String, Estimate> estimates = new HashMap<>();
+
+    synchronized void update(String mediaId, DownloadStatus status) {
+        long now = SystemClock.elapsedRealtime();
+        Estimate estimate = estimates.get(mediaId);
+        if (estimate == null) {
+            estimate = new Estimate(status.bytesDownloaded, now);
+            estimates.put(mediaId, estimate);
+        }
+        boolean wasDownloading = estimate.downloading;
+        estimate.downloading = status.status == VdoDownloadManager.STATUS_DOWNLOADING;
+        estimate.remainingBytes = Math.max(0, status.totalSizeBytes - status.bytesDownloaded);
+
+        long elapsedMs = now - estimate.sampledAt;
+        long deltaBytes = status.bytesDownloaded - estimate.bytesDownloaded;
+        if (!estimate.downloading || !wasDownloading || deltaBytes < 0) {
+            // not downloading, just started, or restarted; start over from this sample
+            estimate.bytesPerSecond = 0;
+            estimate.bytesDownloaded = status.bytesDownloaded;
+            estimate.sampledAt = now;
+            estimate.progressAt = now;
+            return;
+        }
+        if (deltaBytes == 0 || elapsedMs <= 0) {
+            return;
+        }
+
+        double sampleBytesPerSecond = deltaBytes * 1000.0 / elapsedMs;
+        double weight = 1 - Math.exp(-elapsedMs / SMOOTHING_TIME_MS);
+        estimate.bytesPerSecond = estimate.bytesPerSecond == 0 ? sampleBytesPerSecond :
+                estimate.bytesPerSecond + weight * (sampleBytesPerSecond - estimate.bytesPerSecond);
+        estimate.bytesDownloaded = status.bytesDownloaded;
+        estimate.sampledAt = now;
+        estimate.progressAt = now;
+    }
+
+    synchronized void remove(String mediaId) {
+        estimates.remove(mediaId);
+    }
+
+    /**
+     * Adds bytesPerSecond, etaMs (-1 if unknown) and stalled to a download status map.
+     */
+    synchronized void putThroughput(WritableMap statusMap, String mediaId) {
+        Estimate estimate = estimates.get(mediaId);
+        if (estimate == null) {
+            statusMap.putDouble("bytesPerSecond", 0);
+            statusMap.putDouble("etaMs", -1);
+            statusMap.putBoolean("stalled", false);
+            return;
+        }
+        boolean stalled = isStalled(estimate, SystemClock.elapsedRealtime());
+        double bytesPerSecond = stalled ? 0 : estimate.bytesPerSecond;
+        statusMap.putDouble("bytesPerSecond", Math.round(bytesPerSecond));
+        statusMap.putDouble("etaMs", bytesPerSecond > 0 ?
+                Math.round(estimate.remainingBytes * 1000 / bytesPerSecond) : -1);
+        statusMap.putBoolean("stalled", stalled);
+    }
+
+    /**
+     * Adds the total bytesPerSecond of all downloads, and the number of downloads that are
+     * downloading and stalled, to a map.
+     */
+    synchronized void putAggregate(WritableMap map) {
+        long now = SystemClock.elapsedRealtime();
+        double bytesPerSecond = 0;
+        int downloading = 0;
+        int stalled = 0;
+        for (Estimate estimate : estimates.values()) {
+            if (!estimate.downloading) {
+                continue;
+            }
+            downloading++;
+            if (isStalled(estimate, now)) {
+                stalled++;
+            } else {
+                bytesPerSecond += estimate.bytesPerSecond;
+            }
+        }
+        map.putDouble("bytesPerSecond", Math.round(bytesPerSecond));
+        map.putInt("downloading", downloading);
+        map.putInt("stalled", stalled);
+    }
+
+    private static boolean isStalled(Estimate estimate, long now) {
+        return estimate.downloading && now - estimate.progressAt > STALL_TIMEOUT_MS;
+    }
+
+    private static class Estimate {
+        long bytesDownloaded;
+        long sampledAt;
+        long progressAt;
+        long remainingBytes;
+        double bytesPerSecond;
+        boolean downloading;
+
+        Estimate(long bytesDownloaded, long now) {
+            this.bytesDownloaded = bytesDownloaded;
+            this.sampledAt = now;
+            this.progressAt = now;
+        }
+    }
+}
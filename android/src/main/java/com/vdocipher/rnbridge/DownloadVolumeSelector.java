@@ -0,0 +1,232 @@
+package com.vdocipher.rnbridge;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Environment;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nullable;
+
+/**
+ * Picks the storage volume for a new download among all app-specific external storage
+ * volumes, e.g. the primary storage and an SD card.
+ * <p>
+ * Volumes that do not have room for the download are skipped, as are volumes much slower than
+ * the fastest one; of the rest, the volume with the most free space is picked. Free space and
+ * write throughput of each volume are measured once and cached for a while. Throughput is
+ * measured on a background thread, starting with the first selection, so that sessions that do
+ * not download never write a probe; until it is known, a volume is not skipped for being slow.
+ */
+
+class DownloadVolumeSelector {
+    private static final String TAG = "DownloadVolumeSelector";
+
+    private static final long FREE_SPACE_TTL_MS = 30 * 1000;
+    private static final long THROUGHPUT_TTL_MS = 24 * 60 * 60 * 1000;
+    private static final int PROBE_SIZE_BYTES = 1024 * 1024;
+    // volumes slower than this fraction of the fastest volume are not used
+    private static final int MIN_RELATIVE_THROUGHPUT_DIVISOR = 4;
+    // free space kept on a volume besides the download
+    private static final long RESERVE_BYTES = 100 * 1024 * 1024;
+
+    // roots of the known volumes, primary first; read when reporting the volume of a download
+    private volatile String[] volumeRoots = new String[0];
+
+    private final Context context;
+    private final String directoryName;
+    // guarded by this
+    private final List<Volume> volumes = new ArrayList<>();
+    private final ExecutorService probeExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Finds the volumes right away, so that the volume of existing downloads is known.
+     */
+    DownloadVolumeSelector(Context context, String directoryName) {
+        this.context = context.getApplicationContext();
+        this.directoryName = directoryName;
+        synchronized (this) {
+            refreshVolumes();
+        }
+    }
+
+    /**
+     * @param requiredBytes estimated size of the download
+     * @return download directory on the selected volume, created if needed
+     * @throws RuntimeException if no volume is available
+     */
+    synchronized String selectDownloadLocation(long requiredBytes) {
+        refreshVolumes();
+        long now = SystemClock.elapsedRealtime();
+
+        long bestThroughput = 0;
+        for (Volume volume : volumes) {
+            volume.refreshFreeBytes(now);
+            volume.refreshThroughput(now);
+            bestThroughput = Math.max(bestThroughput, volume.bytesPerSecond);
+        }
+
+        Volume selected = null;
+        for (Volume volume : volumes) {
+            long bytesPerSecond = volume.bytesPerSecond;
+            if (volume.freeBytes < requiredBytes + RESERVE_BYTES
+                    || (bytesPerSecond != Volume.THROUGHPUT_UNKNOWN
+                    && bytesPerSecond < bestThroughput / MIN_RELATIVE_THROUGHPUT_DIVISOR)) {
+                continue;
+            }
+            if (selected == null || volume.freeBytes > selected.freeBytes) {
+                selected = volume;
+            }
+        }
+        if (selected == null) {
+            // none has enough room; the download may still fit on the volume with most space
+            for (Volume volume : volumes) {
+                if (selected == null || volume.freeBytes > selected.freeBytes) {
+                    selected = volume;
+                }
+            }
+        }
+        if (selected == null) {
+            throw new RuntimeException("no storage volume available");
+        }
+        Log.i(TAG, "selected volume " + selected.root + ", free " + selected.freeBytes
+                + ", throughput " + selected.bytesPerSecond);
+        return selected.ensureDownloadDirectory(directoryName);
+    }
+
+    void release() {
+        probeExecutor.shutdownNow();
+    }
+
+    /**
+     * @return index of the volume containing the path, 0 being the primary volume, or -1 if
+     * unknown
+     */
+    int volumeIndexOf(@Nullable String path) {
+        if (path == null) {
+            return -1;
+        }
+        String[] roots = volumeRoots;
+        for (int i = 0; i < roots.length; i++) {
+            if (roots[i] != null && path.startsWith(roots[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void refreshVolumes() {
+        File[] dirs = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT ?
+                context.getExternalFilesDirs(null) : new File[]{context.getExternalFilesDir(null)};
+        String[] roots = new String[dirs.length];
+        List<Volume> current = new ArrayList<>();
+        for (int i = 0; i < dirs.length; i++) {
+            File dir = dirs[i];
+            // null if the volume is not mounted
+            if (dir == null || !isMounted(dir)) {
+                continue;
+            }
+            roots[i] = dir.getPath();
+            Volume volume = findVolume(dir.getPath());
+            current.add(volume != null ? volume : new Volume(dir, probeExecutor));
+        }
+        volumes.clear();
+        volumes.addAll(current);
+        volumeRoots = roots;
+    }
+
+    @Nullable
+    private Volume findVolume(String root) {
+        for (Volume volume : volumes) {
+            if (volume.root.equals(root)) {
+                return volume;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isMounted(File dir) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            return Environment.MEDIA_MOUNTED.equals(Environment.getExternalStorageState(dir));
+        }
+        return dir.isDirectory() || dir.mkdirs();
+    }
+
+    private static class Volume {
+        static final long THROUGHPUT_UNKNOWN = -1;
+
+        final File dir;
+        final String root;
+        private final ExecutorService probeExecutor;
+        long freeBytes;
+        // 0 if never measured
+        long freeBytesMeasuredAt = 0;
+        volatile long bytesPerSecond = THROUGHPUT_UNKNOWN;
+        // 0 if never measured; set when a probe is started
+        long throughputMeasuredAt = 0;
+        @Nullable
+        String downloadDirectory;
+
+        Volume(File dir, ExecutorService probeExecutor) {
+            this.dir = dir;
+            this.root = dir.getPath();
+            this.probeExecutor = probeExecutor;
+        }
+
+        void refreshFreeBytes(long now) {
+            if (freeBytesMeasuredAt == 0 || now - freeBytesMeasuredAt > FREE_SPACE_TTL_MS) {
+                freeBytes = dir.getUsableSpace();
+                freeBytesMeasuredAt = now;
+            }
+        }
+
+        /**
+         * Starts measuring the throughput in the background if it was never measured or is stale.
+         */
+        void refreshThroughput(long now) {
+            if (throughputMeasuredAt == 0 || now - throughputMeasuredAt > THROUGHPUT_TTL_MS) {
+                throughputMeasuredAt = now;
+                probeExecutor.execute(() -> bytesPerSecond = probeThroughput());
+            }
+        }
+
+        String ensureDownloadDirectory(String directoryName) {
+            if (downloadDirectory == null || !new File(downloadDirectory).isDirectory()) {
+                File directory = new File(dir, directoryName);
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    throw new RuntimeException("failed to create storage directory");
+                }
+                downloadDirectory = directory.getPath();
+            }
+            return downloadDirectory;
+        }
+
+        /**
+         * @return write throughput in bytes per second, or 0 if the volume is not writable
+         */
+        private long probeThroughput() {
+            File probeFile = new File(dir, ".vdoProbe");
+            byte[] buffer = new byte[PROBE_SIZE_BYTES];
+            long start = SystemClock.elapsedRealtimeNanos();
+            try (FileOutputStream out = new FileOutputStream(probeFile)) {
+                out.write(buffer);
+                out.getFD().sync();
+            } catch (IOException e) {
+                Log.w(TAG, "volume " + root + " not writable: " + e.getMessage());
+                return 0;
+            } finally {
+                probeFile.delete();
+            }
+            long elapsedNanos = Math.max(1, SystemClock.elapsedRealtimeNanos() - start);
+            return PROBE_SIZE_BYTES * 1000000000L / elapsedNanos;
+        }
+    }
+}
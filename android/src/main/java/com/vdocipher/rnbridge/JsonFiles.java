@@ -0,0 +1,64 @@
+package com.vdocipher.rnbridge;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import javax.annotation.Nullable;
+
+/**
+ * Reads and writes the versioned json files persisted by the download module. Files are
+ * written to a temporary file first and then moved into place, so that a reader never sees a
+ * partially written file.
+ */
+
+final class JsonFiles {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private JsonFiles() {}
+
+    /**
+     * @return the json object in the file, or null if the file does not exist or was written in a
+     * format version other than {@code version}
+     */
+    @Nullable
+    static JSONObject read(File file, int version) throws IOException, JSONException {
+        if (!file.exists()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int)file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int count = in.read(bytes, read, bytes.length - read);
+                if (count < 0) {
+                    break;
+                }
+                read += count;
+            }
+            JSONObject json = new JSONObject(new String(bytes, 0, read, UTF_8));
+            return json.optInt("version") == version ? json : null;
+        }
+    }
+
+    static void writeAtomically(File file, JSONObject json) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            out.write(json.toString().getBytes(UTF_8));
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("failed to move " + file.getName() + " into place");
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.vdocipher.rnbridge;
+
+/**
+ * Fixed size ring buffer of recent playback events from all player hosts, for incident analysis.
+ * <p>
+ * Recording is allocation-free and only holds the lock for a handful of stores: an event is a
+ * timestamp, an event code, the id of the recording host and two numeric arguments. Once full,
+ * the oldest events are overwritten. Dumping is rare, so it copies the buffer under the lock and
+ * formats the copy outside it.
+ */
+
+class PlaybackFlightRecorder {
+    static final int INIT_SUCCESS = 1;
+    static final int INIT_FAILURE = 2;     // errorCode, httpStatusCode
+    static final int LOADING = 3;
+    static final int LOADED = 4;           // duration
+    static final int LOAD_ERROR = 5;       // errorCode, httpStatusCode
+    static final int PLAYER_STATE = 6;     // playerState, playWhenReady
+    static final int SEEK = 7;             // timeMs
+    static final int PROGRESS = 8;         // timeMs
+    static final int BUFFER_UPDATE = 9;    // bufferTimeMs
+    static final int SPEED_CHANGED = 10;   // speed * 1000
+    static final int TRACKS_CHANGED = 11;  // available count, selected count
+    static final int MEDIA_ENDED = 12;
+    static final int ERROR = 13;           // errorCode, httpStatusCode
+
+    private static final String[] CODE_NAMES = {
+            "unknown", "initSuccess", "initFailure", "loading", "loaded", "loadError",
+            "playerState", "seek", "progress", "bufferUpdate", "speedChanged", "tracksChanged",
+            "mediaEnded", "error"
+    };
+
+    /**
+     * Source id used by {@link VdoPlayerActivity}; embedded views use their view id, which is
+     * never negative once the view is mounted, or {@code View.NO_ID} before that.
+     */
+    static final int SOURCE_ACTIVITY = Integer.MIN_VALUE;
+
+    private static final int CAPACITY = 1024; // must be a power of two
+    private static final int MASK = CAPACITY - 1;
+
+    private static final PlaybackFlightRecorder instance = new PlaybackFlightRecorder();
+
+    // guarded by this
+    private long nextIndex = 0;
+    private final long[] timestamps = new long[CAPACITY];
+    private final int[] codes = new int[CAPACITY];
+    private final int[] sources = new int[CAPACITY];
+    private final long[] args0 = new long[CAPACITY];
+    private final long[] args1 = new long[CAPACITY];
+
+    static PlaybackFlightRecorder getInstance() {
+        return instance;
+    }
+
+    void record(int source, int code) {
+        record(source, code, 0, 0);
+    }
+
+    void record(int source, int code, long arg0) {
+        record(source, code, arg0, 0);
+    }
+
+    void record(int source, int code, long arg0, long arg1) {
+        long timestamp = System.currentTimeMillis();
+        synchronized (this) {
+            int slot = (int)(nextIndex++ & MASK);
+            timestamps[slot] = timestamp;
+            codes[slot] = code;
+            sources[slot] = source;
+            args0[slot] = arg0;
+            args1[slot] = arg1;
+        }
+    }
+
+    /**
+     * @return recorded events, oldest first, as a json array of
+     * [timestamp, event, source, arg0, arg1] arrays
+     */
+    String dumpJson() {
+        long end;
+        long[] timestamps, args0, args1;
+        int[] codes, sources;
+        synchronized (this) {
+            end = nextIndex;
+            timestamps = this.timestamps.clone();
+            codes = this.codes.clone();
+            sources = this.sources.clone();
+            args0 = this.args0.clone();
+            args1 = this.args1.clone();
+        }
+        long start = Math.max(0, end - CAPACITY);
+        StringBuilder json = new StringBuilder((int)(end - start) * 40 + 2);
+        json.append('[');
+        for (long index = start; index < end; index++) {
+            int slot = (int)(index & MASK);
+            if (index > start) {
+                json.append(',');
+            }
+            json.append('[').append(timestamps[slot])
+                    .append(",\"").append(codeName(codes[slot])).append("\",")
+                    .append(sources[slot]).append(',')
+                    .append(args0[slot]).append(',')
+                    .append(args1[slot]).append(']');
+        }
+        return json.append(']').toString();
+    }
+
+    private static String codeName(int code) {
+        return code > 0 && code < CODE_NAMES.length ? CODE_NAMES[code] : CODE_NAMES[0];
+    }
+}
@@ -0,0 +1,137 @@
+package com.vdocipher.rnbridge;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+import com.vdocipher.aegis.player.VdoPlayer;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+import static com.vdocipher.rnbridge.Utils.stateName;
+
+/**
+ * Latest playback state of a {@link ReactVdoPlayerView}, readable synchronously from any thread.
+ * <p>
+ * Written only from the player callbacks on the main thread. Writes never block; a sequence
+ * counter lets readers detect and retry a read that overlapped a write, so a read always
+ * returns a consistent set of values.
+ */
+
+class PlaybackSnapshot {
+    private static final ConcurrentHashMap<Integer, PlaybackSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    // odd while a write is in progress
+    private volatile int sequence = 0;
+
+    private volatile long currentTime = 0;
+    private volatile long bufferTime = 0;
+    private volatile long duration = 0;
+    private volatile int playerState = VdoPlayer.STATE_IDLE;
+    private volatile boolean playWhenReady = false;
+    private volatile float playbackSpeed = 1f;
+    private volatile long totalPlayed = 0;
+    private volatile long totalCovered = 0;
+
+    static void register(int viewId, PlaybackSnapshot snapshot) {
+        snapshots.put(viewId, snapshot);
+    }
+
+    static void unregister(int viewId, PlaybackSnapshot snapshot) {
+        snapshots.remove(viewId, snapshot);
+    }
+
+    @Nullable
+    static PlaybackSnapshot forView(int viewId) {
+        return snapshots.get(viewId);
+    }
+
+    void reset() {
+        beginWrite();
+        currentTime = 0;
+        bufferTime = 0;
+        duration = 0;
+        totalPlayed = 0;
+        totalCovered = 0;
+        endWrite();
+    }
+
+    void setDuration(long durationMs) {
+        beginWrite();
+        duration = durationMs;
+        endWrite();
+    }
+
+    void setPlayerState(boolean playWhenReady, int playerState) {
+        beginWrite();
+        this.playWhenReady = playWhenReady;
+        this.playerState = playerState;
+        endWrite();
+    }
+
+    void setCurrentTime(long timeMs) {
+        beginWrite();
+        currentTime = timeMs;
+        endWrite();
+    }
+
+    void setPlaybackTotals(long totalPlayed, long totalCovered) {
+        beginWrite();
+        this.totalPlayed = totalPlayed;
+        this.totalCovered = totalCovered;
+        endWrite();
+    }
+
+    void setBufferTime(long bufferTimeMs) {
+        beginWrite();
+        bufferTime = bufferTimeMs;
+        endWrite();
+    }
+
+    void setPlaybackSpeed(float speed) {
+        beginWrite();
+        playbackSpeed = speed;
+        endWrite();
+    }
+
+    /**
+     * @return a consistent copy of the current values
+     */
+    WritableMap toMap() {
+        long currentTime, bufferTime, duration, totalPlayed, totalCovered;
+        int playerState;
+        boolean playWhenReady;
+        float playbackSpeed;
+        int seq;
+        do {
+            seq = sequence;
+            currentTime = this.currentTime;
+            bufferTime = this.bufferTime;
+            duration = this.duration;
+            playerState = this.playerState;
+            playWhenReady = this.playWhenReady;
+            playbackSpeed = this.playbackSpeed;
+            totalPlayed = this.totalPlayed;
+            totalCovered = this.totalCovered;
+        } while ((seq & 1) != 0 || seq != sequence);
+
+        WritableMap map = Arguments.createMap();
+        map.putDouble("currentTime", currentTime);
+        map.putDouble("bufferTime", bufferTime);
+        map.putDouble("duration", duration);
+        map.putString("playerState", stateName(playerState));
+        map.putBoolean("playWhenReady", playWhenReady);
+        map.putDouble("playbackSpeed", playbackSpeed);
+        map.putDouble("totalPlayed", totalPlayed);
+        map.putDouble("totalCovered", totalCovered);
+        return map;
+    }
+
+    private void beginWrite() {
+        sequence++;
+    }
+
+    private void endWrite() {
+        sequence++;
+    }
+}
@@ -2,6 +2,7 @@ package com.vdocipher.rnbridge;
 
 import android.app.Activity;
 import android.os.Build;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.widget.FrameLayout;
@@ -18,14 +19,20 @@ import com.vdocipher.aegis.player.VdoPlayer.VdoInitParams;
 import com.vdocipher.aegis.player.VdoPlayerView;
 import com.vdocipher.aegis.player.a.f;
 
+import javax.annotation.Nullable;
+
 public class ReactVdoPlayerView extends FrameLayout implements InitializationListener,
         PlaybackEventListener, LifecycleEventListener, VdoPlayerControlView.FullscreenActionListener {
     private static final String TAG = "ReactVdoPlayerView";
+    // minimum time between reads of total played and covered time for the playback snapshot
+    private static final long PLAYBACK_TOTALS_INTERVAL_MS = 1000;
 
     private final ThemedReactContext themedReactContext;
     private final VdoPlayerView playerView;
     private final VdoPlayerControlView playerControlView;
     private final VdoEventEmitter eventEmitter;
+    private final PlaybackSnapshot playbackSnapshot = new PlaybackSnapshot();
+    private final PlaybackFlightRecorder flightRecorder = PlaybackFlightRecorder.getInstance();
 
     private VdoPlayer vdoPlayer;
 
@@ -38,6 +45,8 @@ public class ReactVdoPlayerView extends FrameLayout implements InitializationLis
     private VdoInitParams pendingInitParams;
     private boolean stopped = false;
     private Object playbackState = null;
+    // elapsed realtime of the last read of playback totals, 0 if not read since loading
+    private long playbackTotalsReadAt = 0;
 
     public ReactVdoPlayerView(ThemedReactContext context) {
         super(context);
@@ -64,6 +73,8 @@ public class ReactVdoPlayerView extends FrameLayout implements InitializationLis
      */
     public void cleanUp() {
         stopPlayback();
+        eventEmitter.release();
+        PlaybackSnapshot.unregister(getId(), playbackSnapshot);
         themedReactContext.removeLifecycleEventListener(this);
     }
 
@@ -132,14 +143,33 @@ public class ReactVdoPlayerView extends FrameLayout implements InitializationLis
 
     public void getPlaybackProperties() {
         if (vdoPlayer != null) {
-            Object tp = vdoPlayer.getPlaybackProperty("totalPlayed");
-            long totalPlayed = (tp instanceof Long) ? (long)tp : 0L;
-            Object tc = vdoPlayer.getPlaybackProperty("totalCovered");
-            long totalCovered = (tc instanceof Long) ? (long)tc : 0L;
-            eventEmitter.playbackProperties(totalPlayed, totalCovered);
+            eventEmitter.playbackProperties(getLongPlaybackProperty("totalPlayed"),
+                    getLongPlaybackProperty("totalCovered"));
         }
     }
 
+    /**
+     * Reads total played and covered time into the playback snapshot, at most once per
+     * {@link #PLAYBACK_TOTALS_INTERVAL_MS} unless forced, as each read is a call into the player.
+     */
+    private void updatePlaybackTotals(boolean force) {
+        if (vdoPlayer == null) {
+            return;
+        }
+        long now = SystemClock.elapsedRealtime();
+        if (!force && playbackTotalsReadAt != 0 && now - playbackTotalsReadAt < PLAYBACK_TOTALS_INTERVAL_MS) {
+            return;
+        }
+        playbackTotalsReadAt = now;
+        playbackSnapshot.setPlaybackTotals(getLongPlaybackProperty("totalPlayed"),
+                getLongPlaybackProperty("totalCovered"));
+    }
+
+    private long getLongPlaybackProperty(String name) {
+        Object value = vdoPlayer.getPlaybackProperty(name);
+        return (value instanceof Long) ? (long)value : 0L;
+    }
+
     public void setPlayWhenReady(boolean playWhenReady) {
         this.playWhenReady = playWhenReady;
         if (vdoPlayer != null) {
@@ -154,6 +184,22 @@ public class ReactVdoPlayerView extends FrameLayout implements InitializationLis
         }
     }
 
+    public void setSubscribedEvents(@Nullable String[] events) {
+        eventEmitter.setSubscribedEvents(events);
+    }
+
+    public void setProgressInterval(int intervalMs) {
+        eventEmitter.setProgressInterval(intervalMs);
+    }
+
+    public void setBufferUpdateInterval(int intervalMs) {
+        eventEmitter.setBufferUpdateInterval(intervalMs);
+    }
+
+    public void setPlaybackFrameInterval(int intervalMs) {
+        eventEmitter.setPlaybackFrameInterval(intervalMs);
+    }
+
     public void seekTo(int targetMs) {
         if (vdoPlayer != null) {
             vdoPlayer.seekTo(targetMs);
@@ -162,8 +208,10 @@ public class ReactVdoPlayerView extends FrameLayout implements InitializationLis
 
     @Override
     public void setId(int id) {
+        PlaybackSnapshot.unregister(getId(), playbackSnapshot);
         super.setId(id);
         eventEmitter.setViewId(id);
+        PlaybackSnapshot.register(id, playbackSnapshot);
     }
 
     @Override
@@ -217,6 +265,7 @@ public class ReactVdoPlayerView extends FrameLayout implements InitializationLis
         this.vdoPlayer = vdoPlayer;
         vdoPlayer.addPlaybackEventListener(this);
         playerControlView.setPlayer(vdoPlayer);
+        flightRecorder.record(getId(), PlaybackFlightRecorder.INIT_SUCCESS);
         eventEmitter.initSuccess(restored);
 
         // don't continue to playback if stopped
@@ -233,6 +282,8 @@ public class ReactVdoPlayerView extends FrameLayout implements InitializationLis
     @Override
     public void onInitializationFailure(PlayerHost playerHost, ErrorDescription errorDescription) {
         Log.e(TAG, "init failure: " + errorDescription.toString());
+        flightRecorder.record(getId(), PlaybackFlightRecorder.INIT_FAILURE,
+                errorDescription.errorCode, errorDescription.httpStatusCode);
         eventEmitter.initFailure(errorDescription);
     }
 
@@ -248,31 +299,47 @@ public class ReactVdoPlayerView extends FrameLayout implements InitializationLis
 
     @Override
     public void onPlayerStateChanged(boolean playWhenReady, int playerState) {
+        playbackSnapshot.setPlayerState(playWhenReady, playerState);
+        // totals stop changing when playback stops, so keep them exact across state changes
+        updatePlaybackTotals(true);
+        flightRecorder.record(getId(), PlaybackFlightRecorder.PLAYER_STATE, playerState, playWhenReady ? 1 : 0);
         eventEmitter.playerStateChanged(playWhenReady, playerState);
     }
 
     @Override
     public void onSeekTo(long timeMs) {
+        playbackSnapshot.setCurrentTime(timeMs);
+        flightRecorder.record(getId(), PlaybackFlightRecorder.SEEK, timeMs);
         eventEmitter.seekTo(timeMs);
     }
 
     @Override
     public void onProgress(long timeMs) {
+        playbackSnapshot.setCurrentTime(timeMs);
+        updatePlaybackTotals(false);
+        flightRecorder.record(getId(), PlaybackFlightRecorder.PROGRESS, timeMs);
         eventEmitter.progress(timeMs);
     }
 
     @Override
     public void onBufferUpdate(long bufferTimeMs) {
+        playbackSnapshot.setBufferTime(bufferTimeMs);
+        flightRecorder.record(getId(), PlaybackFlightRecorder.BUFFER_UPDATE, bufferTimeMs);
         eventEmitter.bufferUpdate(bufferTimeMs);
     }
 
     @Override
     public void onPlaybackSpeedChanged(float speed) {
+        playbackSnapshot.setPlaybackSpeed(speed);
+        flightRecorder.record(getId(), PlaybackFlightRecorder.SPEED_CHANGED, (long)(speed * 1000));
         eventEmitter.speedChanged(speed);
     }
 
     @Override
     public void onLoading(VdoInitParams vdoInitParams) {
+        playbackSnapshot.reset();
+        playbackTotalsReadAt = 0;
+        flightRecorder.record(getId(), PlaybackFlightRecorder.LOADING);
         eventEmitter.loading(vdoInitParams);
     }
 
@@ -283,26 +350,36 @@ public class ReactVdoPlayerView extends FrameLayout implements InitializationLis
             vdoPlayer.setPlaybackSpeed(pendingPlaybackSpeed);
             pendingPlaybackSpeed = 0;
         }
+        playbackSnapshot.setDuration(vdoPlayer.getDuration());
+        flightRecorder.record(getId(), PlaybackFlightRecorder.LOADED, vdoPlayer.getDuration());
+        StorageQuotaManager.recordPlayback(getContext(), vdoPlayer.getCurrentMedia());
         eventEmitter.loaded(vdoInitParams, vdoPlayer.getCurrentMedia());
     }
 
     @Override
     public void onLoadError(VdoInitParams vdoInitParams, ErrorDescription errorDescription) {
+        flightRecorder.record(getId(), PlaybackFlightRecorder.LOAD_ERROR,
+                errorDescription.errorCode, errorDescription.httpStatusCode);
         eventEmitter.loadError(vdoInitParams, errorDescription);
     }
 
     @Override
     public void onMediaEnded(VdoInitParams vdoInitParams) {
+        flightRecorder.record(getId(), PlaybackFlightRecorder.MEDIA_ENDED);
         eventEmitter.mediaEnded(vdoInitParams);
     }
 
     @Override
     public void onError(VdoInitParams vdoInitParams, ErrorDescription errorDescription) {
+        flightRecorder.record(getId(), PlaybackFlightRecorder.ERROR,
+                errorDescription.errorCode, errorDescription.httpStatusCode);
         eventEmitter.error(vdoInitParams, errorDescription);
     }
 
     @Override
     public void onTracksChanged(Track[] availableTracks, Track[] selectedTracks) {
+        flightRecorder.record(getId(), PlaybackFlightRecorder.TRACKS_CHANGED,
+                availableTracks.length, selectedTracks.length);
         eventEmitter.tracksChanged(availableTracks, selectedTracks);
     }
 }
@@ -2,11 +2,15 @@ package com.vdocipher.rnbridge;
 
 import android.util.Log;
 
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.common.MapBuilder;
 import com.facebook.react.uimanager.ThemedReactContext;
 import com.facebook.react.uimanager.ViewGroupManager;
+import com.facebook.react.uimanager.ViewManagerDelegate;
 import com.facebook.react.uimanager.annotations.ReactProp;
+import com.facebook.react.viewmanagers.RCTVdoPlayerViewManagerDelegate;
+import com.facebook.react.viewmanagers.RCTVdoPlayerViewManagerInterface;
 import com.vdocipher.aegis.player.VdoPlayer.VdoInitParams;
 
 import java.util.Map;
@@ -15,16 +19,28 @@ import javax.annotation.Nullable;
 
 import static com.vdocipher.rnbridge.Utils.getTechOverride;
 
-public class ReactVdoPlayerViewManager extends ViewGroupManager<ReactVdoPlayerView> {
+/**
+ * Props and commands are dispatched through the delegate generated from
+ * specs/VdoPlayerViewNativeComponent.js, so they are checked against the codegen spec.
+ */
+public class ReactVdoPlayerViewManager extends ViewGroupManager<ReactVdoPlayerView>
+        implements RCTVdoPlayerViewManagerInterface<ReactVdoPlayerView> {
     private static final String TAG = "ReactVdoPlayerViewMngr";
 
     private static final String REACT_CLASS = "RCTVdoPlayerView";
 
+    private final ViewManagerDelegate<ReactVdoPlayerView> delegate = new RCTVdoPlayerViewManagerDelegate<>(this);
+
     @Override
     public String getName() {
         return REACT_CLASS;
     }
 
+    @Override
+    protected ViewManagerDelegate<ReactVdoPlayerView> getDelegate() {
+        return delegate;
+    }
+
     @Override
     public ReactVdoPlayerView createViewInstance(ThemedReactContext context) {
         ReactVdoPlayerView playerView = new ReactVdoPlayerView(context);
@@ -42,6 +58,28 @@ public class ReactVdoPlayerViewManager extends ViewGroupManager<ReactVdoPlayerVi
         return builder.build();
     }
 
+    // commands
+
+    @Override
+    public void seek(ReactVdoPlayerView vdoPlayerView, int targetMs) {
+        vdoPlayerView.seekTo(targetMs);
+    }
+
+    @Override
+    public void enterFullscreen(ReactVdoPlayerView vdoPlayerView) {
+        vdoPlayerView.setFullscreen(true);
+    }
+
+    @Override
+    public void exitFullscreen(ReactVdoPlayerView vdoPlayerView) {
+        vdoPlayerView.setFullscreen(false);
+    }
+
+    @Override
+    public void getPlaybackProperties(ReactVdoPlayerView vdoPlayerView) {
+        vdoPlayerView.getPlaybackProperties();
+    }
+
     @Override
     public void onDropViewInstance(ReactVdoPlayerView view) {
         Log.d(TAG, "dropped " + view.toString());
@@ -49,6 +87,7 @@ public class ReactVdoPlayerViewManager extends ViewGroupManager<ReactVdoPlayerVi
     }
 
     @ReactProp(name = "embedInfo")
+    @Override
     public void setEmbedInfo(ReactVdoPlayerView vdoPlayerView, @Nullable ReadableMap embedInfo) {
         if (embedInfo != null) {
             boolean offline = embedInfo.hasKey("offline") && embedInfo.getBoolean("offline");
@@ -109,32 +148,69 @@ public class ReactVdoPlayerViewManager extends ViewGroupManager<ReactVdoPlayerVi
     }
 
     @ReactProp(name = "showNativeControls", defaultBoolean = true)
+    @Override
     public void setShowNativeControls(ReactVdoPlayerView vdoPlayerView, boolean showNativeControls) {
         vdoPlayerView.showNativeControls(showNativeControls);
     }
 
     @ReactProp(name = "playWhenReady", defaultBoolean = true)
+    @Override
     public void setPlayWhenReady(ReactVdoPlayerView vdoPlayerView, boolean playWhenReady) {
         vdoPlayerView.setPlayWhenReady(playWhenReady);
     }
 
     @ReactProp(name = "playbackSpeed", defaultFloat = 1f)
+    @Override
     public void setPlaybackSpeed(ReactVdoPlayerView vdoPlayerView, float playbackSpeed) {
         vdoPlayerView.setPlaybackSpeed(playbackSpeed);
     }
 
+    @ReactProp(name = "subscribedEvents")
+    @Override
+    public void setSubscribedEvents(ReactVdoPlayerView vdoPlayerView, @Nullable ReadableArray subscribedEvents) {
+        String[] events = null;
+        if (subscribedEvents != null) {
+            events = new String[subscribedEvents.size()];
+            for (int i = 0; i < subscribedEvents.size(); i++) {
+                events[i] = subscribedEvents.getString(i);
+            }
+        }
+        vdoPlayerView.setSubscribedEvents(events);
+    }
+
+    @ReactProp(name = "progressIntervalMs", defaultInt = 0)
+    @Override
+    public void setProgressIntervalMs(ReactVdoPlayerView vdoPlayerView, int intervalMs) {
+        vdoPlayerView.setProgressInterval(intervalMs);
+    }
+
+    @ReactProp(name = "bufferUpdateIntervalMs", defaultInt = 0)
+    @Override
+    public void setBufferUpdateIntervalMs(ReactVdoPlayerView vdoPlayerView, int intervalMs) {
+        vdoPlayerView.setBufferUpdateInterval(intervalMs);
+    }
+
+    @ReactProp(name = "playbackFrameIntervalMs", defaultInt = 0)
+    @Override
+    public void setPlaybackFrameIntervalMs(ReactVdoPlayerView vdoPlayerView, int intervalMs) {
+        vdoPlayerView.setPlaybackFrameInterval(intervalMs);
+    }
+
     @ReactProp(name = "seek")
+    @Override
     public void setSeek(ReactVdoPlayerView vdoPlayerView, final int targetMs) {
         vdoPlayerView.seekTo(targetMs);
     }
 
     @ReactProp(name = "fullscreen", defaultBoolean = false)
+    @Override
     public void setFullscreen(ReactVdoPlayerView vdoPlayerView, boolean fullscreen) {
         vdoPlayerView.setFullscreen(fullscreen);
     }
 
     @ReactProp(name = "playbackProperties")
-    public void getPlaybackProperties(ReactVdoPlayerView vdoPlayerView, int ref) {
+    @Override
+    public void setPlaybackProperties(ReactVdoPlayerView vdoPlayerView, int ref) {
         vdoPlayerView.getPlaybackProperties();
     }
 }
@@ -0,0 +1,303 @@
+package com.vdocipher.rnbridge;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.vdocipher.aegis.media.MediaInfo;
+import com.vdocipher.aegis.offline.DownloadStatus;
+import com.vdocipher.aegis.offline.VdoDownloadManager;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.Nullable;
+
+/**
+ * Keeps downloaded media within a byte budget.
+ * <p>
+ * Before a download is enqueued, the space used by existing downloads plus the estimated size
+ * of the new download is checked against the budget. If it does not fit, completed downloads
+ * are evicted, least recently played first, and the new download is let through once they
+ * are deleted. The size of a download that was let through counts against the budget until the
+ * download shows up in the statuses, so that downloads enqueued back to back cannot together
+ * exceed it. Size accounting and eviction run on a background thread; folder sizes of completed
+ * downloads are cached until the download changes.
+ */
+
+class StorageQuotaManager {
+    private static final String TAG = "StorageQuotaManager";
+
+    private static final String PLAYBACK_PREFS_NAME = "vdoOfflinePlayback";
+
+    // records offline playback off the player thread, as loading the preferences reads from disk
+    private static final Executor playbackRecordExecutor = Executors.newSingleThreadExecutor();
+
+    interface Evictor {
+        /**
+         * Deletes the media, and calls back when all deletions are done.
+         */
+        void evict(String[] mediaIds, EvictCallback callback);
+    }
+
+    interface EvictCallback {
+        /**
+         * @param failed number of media that could not be deleted
+         */
+        void onEvicted(int failed);
+    }
+
+    interface ReserveCallback {
+        void onReserved();
+
+        void onQuotaExceeded(long requiredBytes, long availableBytes);
+    }
+
+    interface UsageCallback {
+        void onUsage(long usedBytes, long quotaBytes);
+    }
+
+    private final SharedPreferences playbackPrefs;
+    private final Evictor evictor;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // 0 for no quota
+    private volatile long quotaBytes = 0;
+
+    // accessed on the executor only
+    private final HashMap<String, FolderSize> folderSizes = new HashMap<>();
+    // evicted media whose deletion is not complete yet
+    private final Set<String> evicting = new HashSet<>();
+    // bytes reserved for downloads let through that are not queued yet, by mediaId
+    private final HashMap<String, Long> pendingBytes = new HashMap<>();
+
+    StorageQuotaManager(Context context, Evictor evictor) {
+        this.playbackPrefs = getPlaybackPrefs(context);
+        this.evictor = evictor;
+    }
+
+    /**
+     * Records that a player loaded a media, which makes it the last to be evicted if it was
+     * loaded for offline playback. Called by each player once the media is loaded.
+     */
+    static void recordPlayback(Context context, @Nullable MediaInfo mediaInfo) {
+        if (mediaInfo == null || mediaInfo.type != MediaInfo.TYPE_OFFLINE || mediaInfo.mediaId == null) {
+            return;
+        }
+        final Context appContext = context.getApplicationContext();
+        final String mediaId = mediaInfo.mediaId;
+        final long playedAt = System.currentTimeMillis();
+        playbackRecordExecutor.execute(() ->
+                getPlaybackPrefs(appContext).edit().putLong(mediaId, playedAt).apply());
+    }
+
+    /**
+     * @param quotaBytes maximum bytes used by downloads; 0 for no quota
+     */
+    void setQuota(long quotaBytes) {
+        this.quotaBytes = Math.max(0, quotaBytes);
+    }
+
+    /**
+     * Makes room for a new download, evicting completed downloads if needed. The required bytes
+     * stay reserved until {@link #releaseReservation(String)} is called for the media.
+     *
+     * @param requiredBytes estimated size of the new download
+     * @param statuses      statuses of all downloads
+     */
+    void reserve(String mediaId, long requiredBytes, List<DownloadStatus> statuses, ReserveCallback callback) {
+        executor.execute(() -> {
+            long quota = quotaBytes;
+            if (quota == 0) {
+                callback.onReserved();
+                return;
+            }
+            long used = computeUsage(statuses) + computePendingBytes(statuses);
+            if (used + requiredBytes <= quota) {
+                pendingBytes.put(mediaId, requiredBytes);
+                callback.onReserved();
+                return;
+            }
+
+            // a shared folder is only freed once every download in it is evicted
+            HashMap<String, Integer> folderUsers = new HashMap<>();
+            List<Candidate> candidates = new ArrayList<>();
+            for (DownloadStatus status : statuses) {
+                String candidateId = status.mediaInfo.mediaId;
+                if (evicting.contains(candidateId)) {
+                    continue;
+                }
+                if (status.localStorageFolder != null) {
+                    Integer users = folderUsers.get(status.localStorageFolder);
+                    folderUsers.put(status.localStorageFolder, users != null ? users + 1 : 1);
+                }
+                if (status.status == VdoDownloadManager.STATUS_COMPLETED) {
+                    long lastUsed = Math.max(status.lastModifiedTimestamp, playbackPrefs.getLong(candidateId, 0));
+                    candidates.add(new Candidate(status, lastUsed));
+                }
+            }
+            Collections.sort(candidates, (a, b) -> Long.compare(a.lastUsed, b.lastUsed));
+
+            List<String> toEvict = new ArrayList<>();
+            for (Candidate candidate : candidates) {
+                if (used + requiredBytes <= quota) {
+                    break;
+                }
+                DownloadStatus status = candidate.status;
+                toEvict.add(status.mediaInfo.mediaId);
+                // same figures as computeUsage
+                if (status.localStorageFolder == null) {
+                    used -= status.totalSizeBytes;
+                    continue;
+                }
+                int users = folderUsers.get(status.localStorageFolder) - 1;
+                folderUsers.put(status.localStorageFolder, users);
+                if (users == 0) {
+                    used -= folderSize(status);
+                }
+            }
+            if (used + requiredBytes > quota) {
+                // evicting everything would still not be enough, so evict nothing
+                callback.onQuotaExceeded(requiredBytes,
+                        Math.max(0, quota - computeUsage(statuses) - computePendingBytes(statuses)));
+                return;
+            }
+
+            Log.i(TAG, "evicting " + toEvict);
+            evicting.addAll(toEvict);
+            pendingBytes.put(mediaId, requiredBytes);
+            evictor.evict(toEvict.toArray(new String[0]), failed -> executor.execute(() -> {
+                if (failed == 0) {
+                    callback.onReserved();
+                    return;
+                }
+                // media that were deleted are forgotten; the others still take up space
+                evicting.removeAll(toEvict);
+                pendingBytes.remove(mediaId);
+                Log.w(TAG, "failed to evict " + failed + " of " + toEvict.size());
+                callback.onQuotaExceeded(requiredBytes, 0);
+            }));
+        });
+    }
+
+    /**
+     * Releases the bytes reserved for a media, once it is queued or if enqueuing failed.
+     */
+    void releaseReservation(String mediaId) {
+        executor.execute(() -> pendingBytes.remove(mediaId));
+    }
+
+    void getUsage(List<DownloadStatus> statuses, UsageCallback callback) {
+        executor.execute(() -> callback.onUsage(computeUsage(statuses), quotaBytes));
+    }
+
+    void release() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Drops all records of a deleted media.
+     */
+    void forget(String mediaId) {
+        playbackPrefs.edit().remove(mediaId).apply();
+        executor.execute(() -> {
+            evicting.remove(mediaId);
+            pendingBytes.remove(mediaId);
+        });
+    }
+
+    /**
+     * @return bytes reserved for downloads that are not in the statuses yet
+     */
+    private long computePendingBytes(List<DownloadStatus> statuses) {
+        if (pendingBytes.isEmpty()) {
+            return 0;
+        }
+        Set<String> known = new HashSet<>();
+        for (DownloadStatus status : statuses) {
+            known.add(status.mediaInfo.mediaId);
+        }
+        long bytes = 0;
+        for (Map.Entry<String, Long> pending : pendingBytes.entrySet()) {
+            if (!known.contains(pending.getKey())) {
+                bytes += pending.getValue();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return size on disk of completed downloads plus the expected size of downloads in progress
+     */
+    private long computeUsage(List<DownloadStatus> statuses) {
+        long used = 0;
+        // downloads may share a folder, which is counted once
+        Set<String> countedFolders = new HashSet<>();
+        for (DownloadStatus status : statuses) {
+            if (evicting.contains(status.mediaInfo.mediaId)) {
+                continue;
+            }
+            if (status.status != VdoDownloadManager.STATUS_COMPLETED || status.localStorageFolder == null) {
+                used += status.totalSizeBytes;
+            } else if (countedFolders.add(status.localStorageFolder)) {
+                used += folderSize(status);
+            }
+        }
+        return used;
+    }
+
+    private long folderSize(DownloadStatus status) {
+        FolderSize cached = folderSizes.get(status.localStorageFolder);
+        if (cached == null || cached.lastModifiedTimestamp != status.lastModifiedTimestamp) {
+            cached = new FolderSize(status.lastModifiedTimestamp, directorySize(new File(status.localStorageFolder)));
+            folderSizes.put(status.localStorageFolder, cached);
+        }
+        return cached.bytes;
+    }
+
+    private static long directorySize(File file) {
+        if (file.isFile()) {
+            return file.length();
+        }
+        long size = 0;
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                size += directorySize(child);
+            }
+        }
+        return size;
+    }
+
+    private static SharedPreferences getPlaybackPrefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PLAYBACK_PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static class FolderSize {
+        final long lastModifiedTimestamp;
+        final long bytes;
+
+        FolderSize(long lastModifiedTimestamp, long bytes) {
+            this.lastModifiedTimestamp = lastModifiedTimestamp;
+            this.bytes = bytes;
+        }
+    }
+
+    private static class Candidate {
+        final DownloadStatus status;
+        final long lastUsed;
+
+        Candidate(DownloadStatus status, long lastUsed) {
+            this.status = status;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
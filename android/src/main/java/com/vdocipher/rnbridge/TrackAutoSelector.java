@@ -0,0 +1,114 @@
+package com.vdocipher.rnbridge;
+
+import com.vdocipher.aegis.media.Track;
+import com.vdocipher.aegis.offline.DownloadOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Selects the tracks to download automatically: the best video track, and the best audio track
+ * to go with it, whose combined size fits a size budget and whose height fits a maximum height.
+ * <p>
+ * Track sizes are estimated from the track bitrate and the media duration.
+ */
+
+class TrackAutoSelector {
+    static final long NO_SIZE_LIMIT = Long.MAX_VALUE;
+    static final int NO_HEIGHT_LIMIT = Integer.MAX_VALUE;
+
+    private final long maxSizeBytes;
+    private final int maxHeight;
+
+    TrackAutoSelector(long maxSizeBytes, int maxHeight) {
+        this.maxSizeBytes = maxSizeBytes;
+        this.maxHeight = maxHeight;
+    }
+
+    /**
+     * @return estimated size in bytes of a track of the media
+     */
+    static long estimateTrackSize(Track track, long durationMs) {
+        return Math.max(0, track.bitrate) * durationMs / 8000;
+    }
+
+    /**
+     * @return estimated download size in bytes of the selected tracks
+     */
+    static long estimateDownloadSize(DownloadOptions downloadOptions, int[] selectedIndices) {
+        long bytes = 0;
+        for (int index : selectedIndices) {
+            bytes += estimateTrackSize(downloadOptions.availableTracks[index], downloadOptions.mediaInfo.duration);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return indices of the selected tracks in {@link DownloadOptions#availableTracks}
+     * @throws IllegalArgumentException if no combination of tracks fits the limits
+     */
+    int[] select(DownloadOptions downloadOptions) {
+        Track[] tracks = downloadOptions.availableTracks;
+        long durationMs = downloadOptions.mediaInfo.duration;
+
+        List<Integer> videoIndices = new ArrayList<>();
+        List<Integer> audioIndices = new ArrayList<>();
+        for (int i = 0; i < tracks.length; i++) {
+            if (tracks[i].type == Track.TYPE_VIDEO || tracks[i].type == Track.TYPE_COMBINED) {
+                if (tracks[i].height <= maxHeight) {
+                    videoIndices.add(i);
+                }
+            } else if (tracks[i].type == Track.TYPE_AUDIO) {
+                audioIndices.add(i);
+            }
+        }
+
+        int[] best = null;
+        Track bestVideo = null;
+        Track bestAudio = null;
+        for (int videoIndex : videoIndices) {
+            Track video = tracks[videoIndex];
+            long videoBytes = estimateTrackSize(video, durationMs);
+            if (video.type == Track.TYPE_COMBINED || audioIndices.isEmpty()) {
+                if (videoBytes <= maxSizeBytes && isBetter(video, null, bestVideo, bestAudio)) {
+                    best = new int[]{videoIndex};
+                    bestVideo = video;
+                    bestAudio = null;
+                }
+                continue;
+            }
+            for (int audioIndex : audioIndices) {
+                Track audio = tracks[audioIndex];
+                if (videoBytes + estimateTrackSize(audio, durationMs) <= maxSizeBytes
+                        && isBetter(video, audio, bestVideo, bestAudio)) {
+                    best = new int[]{videoIndex, audioIndex};
+                    bestVideo = video;
+                    bestAudio = audio;
+                }
+            }
+        }
+        if (best == null) {
+            throw new IllegalArgumentException("no track combination fits maxSizeBytes " + maxSizeBytes
+                    + " and maxHeight " + maxHeight);
+        }
+        return best;
+    }
+
+    /**
+     * Prefers a higher video height, then a higher video bitrate, then a higher audio bitrate.
+     */
+    private static boolean isBetter(Track video, Track audio, Track bestVideo, Track bestAudio) {
+        if (bestVideo == null) {
+            return true;
+        }
+        if (video.height != bestVideo.height) {
+            return video.height > bestVideo.height;
+        }
+        if (video.bitrate != bestVideo.bitrate) {
+            return video.bitrate > bestVideo.bitrate;
+        }
+        int audioBitrate = audio != null ? audio.bitrate : 0;
+        int bestAudioBitrate = bestAudio != null ? bestAudio.bitrate : 0;
+        return audioBitrate > bestAudioBitrate;
+    }
+}
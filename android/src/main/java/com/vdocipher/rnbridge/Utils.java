@@ -13,7 +13,8 @@ import com.vdocipher.aegis.offline.DownloadStatus;
 import com.vdocipher.aegis.offline.VdoDownloadManager;
 import com.vdocipher.aegis.player.VdoPlayer;
 
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Utility class.
@@ -35,6 +36,7 @@ public class Utils {
     private static final String EVENT_PROP_TRACK_BITRATE = "bitrate";
     private static final String EVENT_PROP_TRACK_WIDTH = "width";
     private static final String EVENT_PROP_TRACK_HEIGHT = "height";
+    private static final String EVENT_PROP_TRACK_ESTIMATED_SIZE_BYTES = "estimatedSizeBytes";
 
     private static final String EVENT_PROP_DOWNLOAD_STATUS_MEDIA_INFO = "mediaInfo";
     private static final String EVENT_PROP_DOWNLOAD_STATUS_LOCAL_STORAGE_FOLDER = "localStorageFolder";
@@ -51,6 +53,19 @@ public class Utils {
     private static final String EVENT_PROP_ERROR_MSG = "errorMsg";
     private static final String EVENT_PROP_ERROR_HTTP_CODE = "httpStatusCode";
 
+    private static final int MEDIA_INFO_CACHE_SIZE = 128;
+
+    // media info maps and status names by mediaId, most recently used last; the same media is
+    // sent repeatedly with download progress, so its map is built once and copied natively for
+    // each event
+    private static final Map<String, CachedMediaInfo> mediaInfoCache =
+            new LinkedHashMap<String, CachedMediaInfo>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedMediaInfo> eldest) {
+                    return size() > MEDIA_INFO_CACHE_SIZE;
+                }
+            };
+
     public static String trackType(int type) {
         switch (type) {
             case Track.TYPE_AUDIO:
@@ -97,6 +112,37 @@ public class Utils {
         return mediaInfoMap;
     }
 
+    /**
+     * Same as {@link #makeMediaInfoMap(MediaInfo)}, but copies the map from a cache of recently
+     * used media instead of building it again.
+     */
+    public static WritableMap makeCachedMediaInfoMap(MediaInfo mediaInfo) {
+        WritableMap mediaInfoMap = Arguments.createMap();
+        synchronized (mediaInfoCache) {
+            mediaInfoMap.merge(getCachedMediaInfo(mediaInfo).map);
+        }
+        return mediaInfoMap;
+    }
+
+    // must hold the mediaInfoCache lock
+    private static CachedMediaInfo getCachedMediaInfo(MediaInfo mediaInfo) {
+        CachedMediaInfo cached = mediaInfoCache.get(mediaInfo.mediaId);
+        if (cached == null || !cached.matches(mediaInfo)) {
+            cached = new CachedMediaInfo(mediaInfo);
+            mediaInfoCache.put(mediaInfo.mediaId, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * Removes a media from the media info map cache, e.g. when its download is deleted.
+     */
+    public static void invalidateCachedMediaInfo(String mediaId) {
+        synchronized (mediaInfoCache) {
+            mediaInfoCache.remove(mediaId);
+        }
+    }
+
     public static WritableArray makeTrackMapArray(Track[] tracks) {
         WritableArray trackArray = Arguments.createArray();
         for (Track track: tracks) {
@@ -119,16 +165,31 @@ public class Utils {
     public static WritableMap makeDownloadOptionsMap(DownloadOptions options) {
         WritableMap optionsMap = Arguments.createMap();
         optionsMap.putString(EVENT_PROP_MEDIA_INFO_ID, options.mediaId);
-        optionsMap.putMap(EVENT_PROP_MEDIA_INFO, makeMediaInfoMap(options.mediaInfo));
-        optionsMap.putArray(EVENT_PROP_AVAILABLE_TRACKS, makeTrackMapArray(options.availableTracks));
+        optionsMap.putMap(EVENT_PROP_MEDIA_INFO, makeCachedMediaInfoMap(options.mediaInfo));
+        WritableArray trackArray = Arguments.createArray();
+        for (Track track : options.availableTracks) {
+            WritableMap trackMap = makeTrackMap(track);
+            trackMap.putDouble(EVENT_PROP_TRACK_ESTIMATED_SIZE_BYTES,
+                    TrackAutoSelector.estimateTrackSize(track, options.mediaInfo.duration));
+            trackArray.pushMap(trackMap);
+        }
+        optionsMap.putArray(EVENT_PROP_AVAILABLE_TRACKS, trackArray);
         return optionsMap;
     }
 
     public static WritableMap makeDownloadStatusMap(DownloadStatus status) {
+        WritableMap mediaInfoMap = Arguments.createMap();
+        String statusName;
+        synchronized (mediaInfoCache) {
+            CachedMediaInfo cached = getCachedMediaInfo(status.mediaInfo);
+            mediaInfoMap.merge(cached.map);
+            statusName = cached.statusName(status.status);
+        }
+
         WritableMap statusMap = Arguments.createMap();
-        statusMap.putMap(EVENT_PROP_DOWNLOAD_STATUS_MEDIA_INFO, makeMediaInfoMap(status.mediaInfo));
+        statusMap.putMap(EVENT_PROP_DOWNLOAD_STATUS_MEDIA_INFO, mediaInfoMap);
         statusMap.putString(EVENT_PROP_DOWNLOAD_STATUS_LOCAL_STORAGE_FOLDER, status.localStorageFolder);
-        statusMap.putString(EVENT_PROP_DOWNLOAD_STATUS_STATUS, downloadStatusNameFromInt(status.status));
+        statusMap.putString(EVENT_PROP_DOWNLOAD_STATUS_STATUS, statusName);
         statusMap.putInt(EVENT_PROP_DOWNLOAD_STATUS_REASON, status.reason);
         statusMap.putString(EVENT_PROP_DOWNLOAD_STATUS_REASON_DESCRIPTION, status.reasonDescription);
         statusMap.putDouble(EVENT_PROP_DOWNLOAD_STATUS_TOTAL_SIZE_BYTES, status.totalSizeBytes);
@@ -140,14 +201,6 @@ public class Utils {
         return statusMap;
     }
 
-    public static WritableArray makeDownloadStatusMapArray(List<DownloadStatus> statusList) {
-        WritableArray statusArray = Arguments.createArray();
-        for (DownloadStatus status: statusList) {
-            statusArray.pushMap(makeDownloadStatusMap(status));
-        }
-        return statusArray;
-    }
-
     public static String mediaInfoTypeName(int mediaInfoType) {
         switch (mediaInfoType) {
             case MediaInfo.TYPE_STREAMING:
@@ -277,4 +330,35 @@ public class Utils {
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Title and description do not change for a media while it is downloaded, and the entry is
+     * invalidated when the download is deleted, so only the cheap fields are compared on a hit.
+     */
+    private static class CachedMediaInfo {
+        private final int type;
+        private final long duration;
+        private final WritableMap map;
+        // status of the last status name looked up, and its name
+        private int status = -1;
+        private String statusName = null;
+
+        CachedMediaInfo(MediaInfo mediaInfo) {
+            type = mediaInfo.type;
+            duration = mediaInfo.duration;
+            map = makeMediaInfoMap(mediaInfo);
+        }
+
+        boolean matches(MediaInfo mediaInfo) {
+            return type == mediaInfo.type && duration == mediaInfo.duration;
+        }
+
+        String statusName(int status) {
+            if (statusName == null || this.status != status) {
+                statusName = downloadStatusNameFromInt(status);
+                this.status = status;
+            }
+            return statusName;
+        }
+    }
+}
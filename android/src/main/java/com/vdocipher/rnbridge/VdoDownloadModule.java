@@ -1,6 +1,7 @@
 package com.vdocipher.rnbridge;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.util.Log;
 
 import com.facebook.react.bridge.Arguments;
@@ -11,21 +12,23 @@ import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
-import com.vdocipher.aegis.media.ErrorCodes;
 import com.vdocipher.aegis.media.ErrorDescription;
 import com.vdocipher.aegis.offline.DownloadOptions;
 import com.vdocipher.aegis.offline.DownloadRequest;
 import com.vdocipher.aegis.offline.DownloadSelections;
 import com.vdocipher.aegis.offline.DownloadStatus;
-import com.vdocipher.aegis.offline.OptionsDownloader;
 import com.vdocipher.aegis.offline.VdoDownloadManager;
 
-import java.io.File;
-import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import static com.vdocipher.rnbridge.Utils.*;
@@ -39,16 +42,96 @@ import static com.vdocipher.rnbridge.Utils.*;
  * <li>Manage downloads (query or delete downloads)
  */
 
-public class VdoDownloadModule extends ReactContextBaseJavaModule implements VdoDownloadManager.EventListener {
+public class VdoDownloadModule extends ReactContextBaseJavaModule implements VdoDownloadManager.EventListener,
+        DownloadProgressMerger.FlushListener, DownloadScheduler.DownloadController, DeviceConditionMonitor.Listener,
+        StorageQuotaManager.Evictor, DownloadRemover.Deleter, DownloadIntegrityScanner.Listener,
+        DownloadGroups.ProgressListener {
     private static final String TAG = "VdoDownloadModule";
 
-    private final HashMap<String, DownloadOptions> downloadOptionsStore;
+    private static final DownloadStatusStore.StatusFilter ALL_STATUSES = new DownloadStatusStore.StatusFilter(null, null);
+
+    private final DownloadProgressMerger progressMerger;
+    private final DownloadEventSubscriptions subscriptions = new DownloadEventSubscriptions();
+    private volatile boolean listChangesEnabled = false;
     private static final String DEFAULT_DOWNLOAD_DIRECTORY_NAME = "offlineVdos";
+    private static final long REMOVAL_CHECK_TIMEOUT_MS = 10000;
+
+    // created by ensureInitialized on the first download api call
+    private boolean initialized = false;
+    // set when the bridge is destroyed; query results arriving later are dropped
+    private volatile boolean released = false;
+    private DownloadOptionsCache downloadOptionsCache;
+    private DownloadOptionsFetcher optionsFetcher;
+    private DownloadStatusStore statusStore;
+    private DownloadScheduler scheduler;
+    private DeviceConditionMonitor deviceConditionMonitor;
+    private StorageQuotaManager quotaManager;
+    private DownloadVolumeSelector volumeSelector;
+    private DownloadRemover remover;
+    private DownloadIntegrityScanner integrityScanner;
+    private DownloadThroughputTracker throughputTracker;
+    private DownloadStatusMapper statusMapper;
+    private DownloadGroups groups;
+    private final DownloadEventJournal journal;
 
     public VdoDownloadModule(ReactApplicationContext reactContext) {
         super(reactContext);
-        downloadOptionsStore = new HashMap<>();
-        VdoDownloadManager.getInstance(reactContext).addEventListener(this);
+        progressMerger = new DownloadProgressMerger(this);
+        // keep events from now on, rather than from the first download api call
+        journal = DownloadEventJournal.getInstance(reactContext);
+    }
+
+    /**
+     * Starts keeping download events for js before the download module is created, e.g. from
+     * {@code Application.onCreate()}, so that events of downloads that continue at a cold start
+     * are replayed once js attaches. The module starts it otherwise when js first uses it.
+     */
+    public static void startEventJournal(Context context) {
+        DownloadEventJournal.getInstance(context.getApplicationContext());
+    }
+
+    private synchronized boolean isInitialized() {
+        return initialized;
+    }
+
+    /**
+     * Initializes the download manager, registers for its events and loads the saved download
+     * state, unless already done. Called at the start of each download api call, so that
+     * sessions that never use downloads do not pay for it at startup.
+     */
+    private synchronized void ensureInitialized() {
+        if (initialized) {
+            return;
+        }
+        long start = SystemClock.elapsedRealtime();
+        ReactApplicationContext reactContext = getReactApplicationContext();
+        downloadOptionsCache = new DownloadOptionsCache();
+        optionsFetcher = new DownloadOptionsFetcher(DownloadOptionsFetcher.DEFAULT_MAX_CONCURRENT);
+        volumeSelector = new DownloadVolumeSelector(reactContext, DEFAULT_DOWNLOAD_DIRECTORY_NAME);
+        throughputTracker = new DownloadThroughputTracker();
+        integrityScanner = new DownloadIntegrityScanner(reactContext.getFilesDir(), this);
+        statusMapper = new DownloadStatusMapper(volumeSelector, throughputTracker, integrityScanner);
+        statusStore = new DownloadStatusStore(reactContext.getFilesDir(), statusMapper);
+        scheduler = new DownloadScheduler(reactContext.getFilesDir(), this);
+        deviceConditionMonitor = new DeviceConditionMonitor(reactContext, this);
+        // the current conditions, before the scheduler first decides which downloads may run
+        scheduler.setDeviceConditions(deviceConditionMonitor.isUnmeteredNetwork(), deviceConditionMonitor.isCharging());
+        deviceConditionMonitor.start();
+        quotaManager = new StorageQuotaManager(reactContext, this);
+        remover = new DownloadRemover(this);
+        groups = new DownloadGroups(reactContext.getFilesDir(), statusStore::get, this);
+        VdoDownloadManager vdoDownloadManager = VdoDownloadManager.getInstance(reactContext);
+        vdoDownloadManager.addEventListener(this);
+        vdoDownloadManager.query(new VdoDownloadManager.Query(), statusList -> {
+            if (released) {
+                return;
+            }
+            statusStore.seed(statusList);
+            scheduler.reconcile(statusList);
+            integrityScanner.scan(statusList, null);
+        });
+        initialized = true;
+        Log.d(TAG, "initialized in " + (SystemClock.elapsedRealtime() - start) + " ms");
     }
 
     @Override
@@ -60,38 +143,77 @@ public class VdoDownloadModule extends ReactContextBaseJavaModule implements Vdo
     public void getDownloadOptions(ReadableMap optionParams,
                                    Callback errorCallback,
                                    Callback successCallback) {
+        ensureInitialized();
         String otp = optionParams.getString("otp");
         String playbackInfo = optionParams.getString("playbackInfo");
 
-        OptionsDownloader optionsDownloader = new OptionsDownloader();
+        fetchDownloadOptions(otp, playbackInfo, new DownloadOptionsFetcher.Callback() {
+            @Override
+            public void onOptionsReceived(String playbackInfo, DownloadOptions options) {
+                successCallback.invoke(
+                        playbackInfo, /* nativeId */
+                        makeDownloadOptionsMap(options)
+                );
+            }
+
+            @Override
+            public void onOptionsNotReceived(String playbackInfo, ErrorDescription errorDescription) {
+                errorCallback.invoke(
+                        makeErrorDescriptionMap(errorDescription)
+                );
+            }
+        });
+    }
 
-        try {
-            optionsDownloader.downloadOptionsWithOtp(otp, playbackInfo, new OptionsDownloader.Callback() {
+    /**
+     * Fetches download options for many videos. The result for each video is sent as an
+     * onDownloadOptionsResult event as soon as it is available; the success callback is invoked
+     * with a summary once all results have been sent.
+     */
+    @ReactMethod
+    public void getDownloadOptionsBatch(int batchId,
+                                        ReadableArray optionParamsList,
+                                        Callback successCallback) {
+        ensureInitialized();
+        final int total = optionParamsList.size();
+        if (total == 0) {
+            successCallback.invoke(makeBatchSummaryMap(batchId, 0, 0));
+            return;
+        }
+        final AtomicInteger remaining = new AtomicInteger(total);
+        final AtomicInteger failed = new AtomicInteger();
+
+        for (int i = 0; i < total; i++) {
+            final int index = i;
+            ReadableMap optionParams = optionParamsList.getMap(i);
+            String otp = optionParams.getString("otp");
+            String playbackInfo = optionParams.getString("playbackInfo");
+
+            fetchDownloadOptions(otp, playbackInfo, new DownloadOptionsFetcher.Callback() {
                 @Override
-                public void onOptionsReceived(DownloadOptions options) {
-                    Log.i(TAG, "onOptionsReceived");
-                    downloadOptionsStore.put(playbackInfo, options);
-                    successCallback.invoke(
-                            playbackInfo, /* nativeId */
-                            makeDownloadOptionsMap(options)
-                    );
+                public void onOptionsReceived(String playbackInfo, DownloadOptions options) {
+                    WritableMap result = makeBatchResultMap(batchId, index, playbackInfo);
+                    result.putMap("downloadOptions", makeDownloadOptionsMap(options));
+                    sendBatchResult(result);
                 }
 
                 @Override
-                public void onOptionsNotReceived(ErrorDescription errorDescription) {
-                    Log.e(TAG, "onOptionsNotReceived: " + errorDescription.toString());
-                    errorCallback.invoke(
-                            makeErrorDescriptionMap(errorDescription)
-                    );
+                public void onOptionsNotReceived(String playbackInfo, ErrorDescription errorDescription) {
+                    failed.incrementAndGet();
+                    WritableMap result = makeBatchResultMap(batchId, index, playbackInfo);
+                    result.putMap("errorDescription", makeErrorDescriptionMap(errorDescription));
+                    sendBatchResult(result);
+                }
+
+                private void sendBatchResult(WritableMap result) {
+                    getReactApplicationContext()
+                            .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                            .emit("onDownloadOptionsResult", result);
+                    if (remaining.decrementAndGet() == 0) {
+                        successCallback.invoke(makeBatchSummaryMap(batchId, total, failed.get()));
+                    }
                 }
             });
-        } catch (RuntimeException e) {
-            Log.e(TAG, Log.getStackTraceString(e));
-            ErrorDescription errDesc = new ErrorDescription(
-                    ErrorCodes.INVALID_PLAYBACK_INFO, "Invalid playbackInfo", -1);
-            errorCallback.invoke(
-                    makeErrorDescriptionMap(errDesc)
-            );
         }
     }
 
@@ -100,6 +222,7 @@ public class VdoDownloadModule extends ReactContextBaseJavaModule implements Vdo
                                 ReadableMap requestOptions,
                                 Callback errorCallback,
                                 Callback successCallback) {
+        ensureInitialized();
         enqueueDownload(nativeId, requestOptions, new EnqueueFailureCallback(errorCallback), successCallback);
     }
 
@@ -107,27 +230,25 @@ public class VdoDownloadModule extends ReactContextBaseJavaModule implements Vdo
     public void query(ReadableMap queryFilters,
                       Callback errorCallback,
                       Callback successCallback) {
+        ensureInitialized();
         try {
-            // Read query filters
-            ReadableArray mediaIdFilters = queryFilters != null ? queryFilters.getArray("mediaId") : null;
-            ReadableArray statusFilters = queryFilters != null ? queryFilters.getArray("status") : null;
+            String[] mediaIds = readMediaIdFilters(queryFilters);
+            int[] statuses = readStatusFilters(queryFilters);
+
+            // Serve from the status store if it is seeded or has a saved index
+            WritableArray storedStatuses = statusStore.query(new DownloadStatusStore.StatusFilter(mediaIds, statuses));
+            if (storedStatuses != null) {
+                Log.i(TAG, storedStatuses.size() + " results found in status store");
+                successCallback.invoke(storedStatuses);
+                return;
+            }
 
             // Build query
             VdoDownloadManager.Query query = new VdoDownloadManager.Query();
-
-            if (mediaIdFilters != null && mediaIdFilters.size() > 0) {
-                String[] mediaIds = new String[mediaIdFilters.size()];
-                for (int i = 0; i < mediaIdFilters.size(); i++) {
-                    mediaIds[i] = mediaIdFilters.getString(i);
-                }
+            if (mediaIds != null) {
                 query.setFilterByMediaId(mediaIds);
             }
-
-            if (statusFilters != null && statusFilters.size() > 0) {
-                int[] statuses = new int[statusFilters.size()];
-                for (int i = 0; i < statusFilters.size(); i++) {
-                    statuses[i] = downloadStatusIntFromName(statusFilters.getString(i));
-                }
+            if (statuses != null) {
                 query.setFilterByStatus(statuses);
             }
 
@@ -135,7 +256,7 @@ public class VdoDownloadModule extends ReactContextBaseJavaModule implements Vdo
             vdoDownloadManager.query(query, statusList -> {
                 Log.i(TAG, statusList.size() + " results found");
                 successCallback.invoke(
-                        makeDownloadStatusMapArray(statusList)
+                        statusMapper.makeMapArray(statusList)
                 );
             });
         } catch (RuntimeException e) {
@@ -144,10 +265,55 @@ public class VdoDownloadModule extends ReactContextBaseJavaModule implements Vdo
         }
     }
 
+    /**
+     * Same as {@link #query}, but returns one sorted page of results at a time.
+     *
+     * @param pageOptions optional sortBy ('lastModifiedTimestamp' (default), 'title', 'size' or
+     *                    'status'), sortOrder ('desc' (default) or 'asc'), limit, cursor from a
+     *                    previous page, and countOnly
+     */
     @ReactMethod
-    public void remove(ReadableArray deleteIds,
+    public void queryPage(ReadableMap queryFilters,
+                          ReadableMap pageOptions,
+                          Callback errorCallback,
+                          Callback successCallback) {
+        ensureInitialized();
+        try {
+            DownloadStatusPage page = DownloadStatusPage.fromOptions(pageOptions);
+            String[] mediaIds = readMediaIdFilters(queryFilters);
+            int[] statuses = readStatusFilters(queryFilters);
+
+            List<DownloadStatus> storedStatuses = statusStore.filter(new DownloadStatusStore.StatusFilter(mediaIds, statuses));
+            if (storedStatuses != null) {
+                successCallback.invoke(page.makePage(storedStatuses, statusMapper));
+                return;
+            }
+
+            VdoDownloadManager.Query query = new VdoDownloadManager.Query();
+            if (mediaIds != null) {
+                query.setFilterByMediaId(mediaIds);
+            }
+            if (statuses != null) {
+                query.setFilterByStatus(statuses);
+            }
+            VdoDownloadManager vdoDownloadManager = VdoDownloadManager.getInstance(getReactApplicationContext());
+            vdoDownloadManager.query(query, statusList -> successCallback.invoke(page.makePage(statusList, statusMapper)));
+        } catch (RuntimeException e) {
+            Log.e(TAG, "error running query: " + Log.getStackTraceString(e));
+            errorCallback.invoke(e.getClass().getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Removes downloads in the background. Progress is sent as an onRemoveProgress event for each
+     * media; the success callback is invoked with a summary once all media have been removed.
+     */
+    @ReactMethod
+    public void remove(int removalId,
+                       ReadableArray deleteIds,
                        Callback errorCallback,
                        Callback successCallback) {
+        ensureInitialized();
         try {
             // Read mediaIds to delete
             final String[] mediaIdsToDelete;
@@ -160,75 +326,568 @@ public class VdoDownloadModule extends ReactContextBaseJavaModule implements Vdo
                 }
             }
 
-            VdoDownloadManager vdoDownloadManager = VdoDownloadManager.getInstance(getReactApplicationContext());
-            vdoDownloadManager.remove(mediaIdsToDelete);
-            successCallback.invoke();
+            remover.remove(mediaIdsToDelete, new DownloadRemover.Listener() {
+                @Override
+                public void onRemoved(String mediaId, int done, int total, @Nullable String error) {
+                    WritableMap progress = Arguments.createMap();
+                    progress.putInt("removalId", removalId);
+                    progress.putString("mediaId", mediaId);
+                    progress.putInt("done", done);
+                    progress.putInt("total", total);
+                    if (error != null) {
+                        progress.putString("error", error);
+                    }
+                    getReactApplicationContext()
+                            .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                            .emit("onRemoveProgress", progress);
+                }
+
+                @Override
+                public void onComplete(int total, int failed) {
+                    WritableMap summary = Arguments.createMap();
+                    summary.putInt("removalId", removalId);
+                    summary.putInt("total", total);
+                    summary.putInt("removed", total - failed);
+                    summary.putInt("failed", failed);
+                    successCallback.invoke(summary);
+                }
+            });
         } catch (RuntimeException e) {
             Log.e(TAG, "error deleting: " + Log.getStackTraceString(e));
             errorCallback.invoke(e.getClass().getName(), e.getMessage());
         }
     }
 
+    /**
+     * Merges onChanged events for an interval, sending only the latest status of each media
+     * together in a single onChangedBatch event.
+     *
+     * @param intervalMs interval between batches; 0 sends each onChanged event right away
+     */
+    @ReactMethod
+    public void setProgressEventInterval(int intervalMs) {
+        progressMerger.setInterval(intervalMs);
+    }
+
+    /**
+     * Attaches js for download events, and invokes the callback with the events that happened
+     * while js was not attached: the latest event of each media, oldest first, and whether
+     * events were dropped. Until js attaches, download events are kept instead of being sent.
+     */
+    @ReactMethod
+    public void replayDownloadEvents(Callback successCallback) {
+        ensureInitialized();
+        successCallback.invoke(journal.attach(statusMapper));
+    }
+
+    /**
+     * Subscribes to onQueued, onChanged, onCompleted, onFailed and onDeleted events of a media,
+     * or of all media if mediaId is null. Events are only sent for media with a subscription;
+     * each call must be matched by a call to {@link #unsubscribeDownloadEvents(String)}.
+     */
+    @ReactMethod
+    public void subscribeDownloadEvents(@Nullable String mediaId) {
+        subscriptions.subscribe(mediaId);
+    }
+
+    @ReactMethod
+    public void unsubscribeDownloadEvents(@Nullable String mediaId) {
+        subscriptions.unsubscribe(mediaId);
+    }
+
+    /**
+     * Turns onDownloadListChanges events on or off. Each event has the sequence number of the
+     * latest change it contains, and insert, update or remove changes keyed by mediaId.
+     */
+    @ReactMethod
+    public void setDownloadListChangesEnabled(boolean enabled) {
+        listChangesEnabled = enabled;
+    }
+
+    /**
+     * Invokes the success callback with the current sequence number and the download list
+     * changes since the given sequence number, coalesced to one per media. If those changes are
+     * no longer known, reset is true and the changes insert all current downloads.
+     */
+    @ReactMethod
+    public void getDownloadListChangesSince(double sequence,
+                                            Callback errorCallback,
+                                            Callback successCallback) {
+        ensureInitialized();
+        WritableMap changes = statusStore.changesSince((long)sequence);
+        if (changes != null) {
+            successCallback.invoke(changes);
+            return;
+        }
+        // not loaded yet
+        try {
+            VdoDownloadManager.getInstance(getReactApplicationContext()).query(new VdoDownloadManager.Query(),
+                    statusList -> {
+                        statusStore.seed(statusList);
+                        successCallback.invoke(statusStore.changesSince((long)sequence));
+                    });
+        } catch (RuntimeException e) {
+            Log.e(TAG, "error running query: " + Log.getStackTraceString(e));
+            errorCallback.invoke(e.getClass().getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Invokes the callback with the aggregated progress of a download group.
+     */
+    @ReactMethod
+    public void getGroupProgress(String groupId, Callback successCallback) {
+        ensureInitialized();
+        successCallback.invoke(groups.makeProgressMap(groupId));
+    }
+
+    /**
+     * Pauses all downloads of a group until {@link #resumeGroup} is called.
+     */
+    @ReactMethod
+    public void pauseGroup(String groupId) {
+        ensureInitialized();
+        scheduler.setPaused(groups.getMembers(groupId), true);
+    }
+
+    @ReactMethod
+    public void resumeGroup(String groupId) {
+        ensureInitialized();
+        scheduler.setPaused(groups.getMembers(groupId), false);
+    }
+
+    /**
+     * Removes all downloads of a group, like {@link #remove}.
+     */
+    @ReactMethod
+    public void removeGroup(int removalId,
+                            String groupId,
+                            Callback errorCallback,
+                            Callback successCallback) {
+        ensureInitialized();
+        remove(removalId, Arguments.fromArray(groups.getMembers(groupId)), errorCallback, successCallback);
+    }
+
+    /**
+     * Checks the files of all completed downloads against the manifests saved when they completed.
+     * Downloads whose integrity changed are reported in onIntegrityChecked events; the callback is
+     * invoked with a summary once all downloads have been checked.
+     */
+    @ReactMethod
+    public void scanDownloadIntegrity(Callback successCallback) {
+        ensureInitialized();
+        withAllStatuses(statusList -> integrityScanner.scan(statusList, (scanned, damaged) -> {
+            WritableMap summary = Arguments.createMap();
+            summary.putInt("scanned", scanned);
+            summary.putInt("damaged", damaged);
+            successCallback.invoke(summary);
+        }));
+    }
+
+    /**
+     * Invokes the callback with the total bytesPerSecond of all downloads, and the number of
+     * downloads that are downloading and stalled.
+     */
+    @ReactMethod
+    public void getDownloadThroughput(Callback successCallback) {
+        ensureInitialized();
+        WritableMap throughput = Arguments.createMap();
+        throughputTracker.putAggregate(throughput);
+        successCallback.invoke(throughput);
+    }
+
+    /**
+     * Limits the number of downloads running at a time. Downloads over the limit are paused and
+     * resumed in order of priority as running downloads finish.
+     *
+     * @param maxConcurrent maximum number of running downloads; 0 for no limit
+     */
+    @ReactMethod
+    public void setMaxConcurrentDownloads(int maxConcurrent) {
+        ensureInitialized();
+        scheduler.setMaxConcurrent(maxConcurrent);
+    }
+
+    /**
+     * Changes the priority of a queued download; downloads with a higher priority run first.
+     */
+    @ReactMethod
+    public void setDownloadPriority(String mediaId, int priority) {
+        ensureInitialized();
+        scheduler.setPriority(mediaId, priority);
+    }
+
+    /**
+     * Limits the space used by downloads. When a new download does not fit, completed downloads
+     * are deleted, least recently played first; if that is not enough, enqueue fails.
+     *
+     * @param quotaBytes maximum bytes used by downloads; 0 for no limit
+     */
+    @ReactMethod
+    public void setStorageQuota(double quotaBytes) {
+        ensureInitialized();
+        quotaManager.setQuota((long)quotaBytes);
+    }
+
+    @ReactMethod
+    public void getStorageUsage(Callback successCallback) {
+        ensureInitialized();
+        withAllStatuses(statusList -> quotaManager.getUsage(statusList, (usedBytes, quotaBytes) -> {
+            WritableMap usage = Arguments.createMap();
+            usage.putDouble("usedBytes", usedBytes);
+            usage.putDouble("quotaBytes", quotaBytes);
+            successCallback.invoke(usage);
+        }));
+    }
+
     @Override
     public void onCatalystInstanceDestroy() {
         super.onCatalystInstanceDestroy();
-        // TODO unregister EventListener
+        released = true;
+        progressMerger.release();
+        if (!isInitialized()) {
+            return;
+        }
+        deviceConditionMonitor.stop();
+        journal.detach();
+        VdoDownloadManager.getInstance(getReactApplicationContext()).removeEventListener(this);
+        groups.release();
+        statusStore.release();
+        scheduler.release();
+        quotaManager.release();
+        volumeSelector.release();
+        remover.release();
+        integrityScanner.release();
     }
 
     // VdoDownloadManager.EventListener impl
 
     @Override
     public void onQueued(String mediaId, DownloadStatus downloadStatus) {
+        DownloadStatusStore.Change change = statusStore.update(mediaId, downloadStatus);
+        quotaManager.releaseReservation(mediaId);
+        groups.mediaChanged(mediaId);
+        throughputTracker.update(mediaId, downloadStatus);
         sendEvent(getReactApplicationContext(), "onQueued", mediaId, downloadStatus);
+        sendListChange(change, downloadStatus);
     }
 
     @Override
     public void onChanged(String mediaId, DownloadStatus downloadStatus) {
-        sendEvent(getReactApplicationContext(), "onChanged", mediaId, downloadStatus);
+        DownloadStatusStore.Change change = statusStore.update(mediaId, downloadStatus);
+        groups.mediaChanged(mediaId);
+        throughputTracker.update(mediaId, downloadStatus);
+        if (!progressMerger.changed(mediaId, downloadStatus)) {
+            sendEvent(getReactApplicationContext(), "onChanged", mediaId, downloadStatus);
+            sendListChange(change, downloadStatus);
+        }
     }
 
     @Override
     public void onCompleted(String mediaId, DownloadStatus downloadStatus) {
-        sendEvent(getReactApplicationContext(), "onCompleted", mediaId, downloadStatus);
+        DownloadStatusStore.Change change = statusStore.update(mediaId, downloadStatus);
+        groups.mediaChanged(mediaId);
+        throughputTracker.update(mediaId, downloadStatus);
+        scheduler.remove(mediaId);
+        integrityScanner.recordCompleted(mediaId, downloadStatus);
+        progressMerger.sendTerminal(mediaId, () -> {
+            sendEvent(getReactApplicationContext(), "onCompleted", mediaId, downloadStatus);
+            sendListChange(change, downloadStatus);
+        });
     }
 
     @Override
     public void onFailed(String mediaId, DownloadStatus downloadStatus) {
-        sendEvent(getReactApplicationContext(), "onFailed", mediaId, downloadStatus);
+        DownloadStatusStore.Change change = statusStore.update(mediaId, downloadStatus);
+        groups.mediaChanged(mediaId);
+        throughputTracker.update(mediaId, downloadStatus);
+        scheduler.remove(mediaId);
+        progressMerger.sendTerminal(mediaId, () -> {
+            sendEvent(getReactApplicationContext(), "onFailed", mediaId, downloadStatus);
+            sendListChange(change, downloadStatus);
+        });
     }
 
     @Override
     public void onDeleted(String mediaId) {
-        sendEvent(getReactApplicationContext(), "onDeleted", mediaId, null);
+        invalidateCachedMediaInfo(mediaId);
+        quotaManager.forget(mediaId);
+        throughputTracker.remove(mediaId);
+        integrityScanner.forget(mediaId);
+        groups.mediaDeleted(mediaId);
+        DownloadStatusStore.Change change = statusStore.remove(mediaId);
+        scheduler.remove(mediaId);
+        progressMerger.sendTerminal(mediaId, () -> {
+            sendEvent(getReactApplicationContext(), "onDeleted", mediaId, null);
+            sendListChange(change, null);
+        });
+    }
+
+    // DownloadProgressMerger.FlushListener impl
+
+    @Override
+    public void onFlush(Map<String, DownloadStatus> statuses) {
+        // while js is not attached, download events are kept in the journal; list changes are
+        // sent regardless, as they do not depend on the journal
+        boolean attached = journal.isAttached();
+        WritableArray events = Arguments.createArray();
+        for (Map.Entry<String, DownloadStatus> entry : statuses.entrySet()) {
+            if (!attached || !subscriptions.isSubscribed(entry.getKey())) {
+                continue;
+            }
+            WritableMap event = Arguments.createMap();
+            event.putString("mediaId", entry.getKey());
+            event.putMap("downloadStatus", statusMapper.makeMap(entry.getValue()));
+            events.pushMap(event);
+        }
+        WritableMap params = Arguments.createMap();
+        params.putArray("events", events);
+        WritableMap throughput = Arguments.createMap();
+        throughputTracker.putAggregate(throughput);
+        params.putMap("throughput", throughput);
+        if (events.size() > 0) {
+            getReactApplicationContext()
+                    .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                    .emit("onChangedBatch", params);
+        }
+
+        if (listChangesEnabled) {
+            WritableArray changes = Arguments.createArray();
+            for (Map.Entry<String, DownloadStatus> entry : statuses.entrySet()) {
+                changes.pushMap(statusStore.makeChangeMap(
+                        DownloadStatusStore.CHANGE_UPDATE, entry.getKey(), entry.getValue()));
+            }
+            sendListChanges(statusStore.getSequence(), changes);
+        }
+    }
+
+    // DownloadScheduler.DownloadController impl
+
+    @Override
+    public void pause(String[] mediaIds) {
+        VdoDownloadManager.getInstance(getReactApplicationContext()).stopDownloads(mediaIds);
+    }
+
+    @Override
+    public void resume(String[] mediaIds) {
+        VdoDownloadManager.getInstance(getReactApplicationContext()).resumeDownloads(mediaIds);
+    }
+
+    // DeviceConditionMonitor.Listener impl
+
+    @Override
+    public void onDeviceConditionsChanged(boolean unmeteredNetwork, boolean charging) {
+        scheduler.setDeviceConditions(unmeteredNetwork, charging);
+    }
+
+    // StorageQuotaManager.Evictor impl
+
+    @Override
+    public void evict(String[] mediaIds, StorageQuotaManager.EvictCallback callback) {
+        remover.evict(mediaIds, new DownloadRemover.Listener() {
+            @Override
+            public void onRemoved(String mediaId, int done, int total, @Nullable String error) {
+            }
+
+            @Override
+            public void onComplete(int total, int failed) {
+                Log.i(TAG, "evicted " + (total - failed) + " of " + total);
+                callback.onEvicted(failed);
+            }
+        });
+    }
+
+    // DownloadIntegrityScanner.Listener impl
+
+    @Override
+    public void onChecked(String mediaId, String integrity, List<String> damagedFiles) {
+        WritableMap params = Arguments.createMap();
+        params.putString("mediaId", mediaId);
+        params.putString("integrity", integrity);
+        WritableArray files = Arguments.createArray();
+        for (String file : damagedFiles) {
+            files.pushString(file);
+        }
+        params.putArray("damagedFiles", files);
+        getReactApplicationContext()
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit("onIntegrityChecked", params);
+    }
+
+    // DownloadGroups.ProgressListener impl
+
+    @Override
+    public void onGroupProgress(WritableMap progress) {
+        getReactApplicationContext()
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit("onGroupProgress", progress);
+    }
+
+    // DownloadRemover.Deleter impl
+
+    @Override
+    public void delete(String mediaId) {
+        VdoDownloadManager vdoDownloadManager = VdoDownloadManager.getInstance(getReactApplicationContext());
+        vdoDownloadManager.remove(new String[]{mediaId});
+
+        // removal does not report failures, so confirm the media is gone
+        VdoDownloadManager.Query query = new VdoDownloadManager.Query();
+        query.setFilterByMediaId(new String[]{mediaId});
+        CountDownLatch queried = new CountDownLatch(1);
+        AtomicBoolean present = new AtomicBoolean();
+        vdoDownloadManager.query(query, statusList -> {
+            present.set(!statusList.isEmpty());
+            queried.countDown();
+        });
+        try {
+            if (!queried.await(REMOVAL_CHECK_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("timed out checking removal of " + mediaId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted checking removal of " + mediaId);
+        }
+        if (present.get()) {
+            throw new IllegalStateException("media still present after removal: " + mediaId);
+        }
     }
 
     // Private
 
+    private interface StatusListCallback {
+        void onStatusList(List<DownloadStatus> statusList);
+    }
+
+    private void withAllStatuses(StatusListCallback callback) {
+        List<DownloadStatus> storedStatuses = statusStore.filter(ALL_STATUSES);
+        if (storedStatuses != null) {
+            callback.onStatusList(storedStatuses);
+        } else {
+            VdoDownloadManager.getInstance(getReactApplicationContext())
+                    .query(new VdoDownloadManager.Query(), statusList -> {
+                        if (!released) {
+                            callback.onStatusList(statusList);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * @return true if the map has a non-null value for the key; keys of undefined values in js
+     * are sent as null under the new architecture
+     */
+    private static boolean hasValue(ReadableMap map, String key) {
+        return map.hasKey(key) && !map.isNull(key);
+    }
+
+    @Nullable
+    private static String[] readMediaIdFilters(@Nullable ReadableMap queryFilters) {
+        ReadableArray mediaIdFilters = queryFilters != null && queryFilters.hasKey("mediaId") ?
+                queryFilters.getArray("mediaId") : null;
+        if (mediaIdFilters == null || mediaIdFilters.size() == 0) {
+            return null;
+        }
+        String[] mediaIds = new String[mediaIdFilters.size()];
+        for (int i = 0; i < mediaIdFilters.size(); i++) {
+            mediaIds[i] = mediaIdFilters.getString(i);
+        }
+        return mediaIds;
+    }
+
+    @Nullable
+    private static int[] readStatusFilters(@Nullable ReadableMap queryFilters) {
+        ReadableArray statusFilters = queryFilters != null && queryFilters.hasKey("status") ?
+                queryFilters.getArray("status") : null;
+        if (statusFilters == null || statusFilters.size() == 0) {
+            return null;
+        }
+        int[] statuses = new int[statusFilters.size()];
+        for (int i = 0; i < statusFilters.size(); i++) {
+            statuses[i] = downloadStatusIntFromName(statusFilters.getString(i));
+        }
+        return statuses;
+    }
+
+    private void fetchDownloadOptions(String otp, String playbackInfo, DownloadOptionsFetcher.Callback callback) {
+        DownloadOptions cachedOptions = downloadOptionsCache.get(otp, playbackInfo);
+        if (cachedOptions != null) {
+            Log.i(TAG, "using cached download options");
+            downloadOptionsCache.handOut(playbackInfo, cachedOptions);
+            callback.onOptionsReceived(playbackInfo, cachedOptions);
+            return;
+        }
+
+        optionsFetcher.fetch(otp, playbackInfo, new DownloadOptionsFetcher.Callback() {
+            @Override
+            public void onOptionsReceived(String playbackInfo, DownloadOptions options) {
+                Log.i(TAG, "onOptionsReceived");
+                downloadOptionsCache.put(otp, playbackInfo, options);
+                downloadOptionsCache.handOut(playbackInfo, options);
+                callback.onOptionsReceived(playbackInfo, options);
+            }
+
+            @Override
+            public void onOptionsNotReceived(String playbackInfo, ErrorDescription errorDescription) {
+                Log.e(TAG, "onOptionsNotReceived: " + errorDescription.toString());
+                callback.onOptionsNotReceived(playbackInfo, errorDescription);
+            }
+        });
+    }
+
+    private static WritableMap makeBatchResultMap(int batchId, int index, String playbackInfo) {
+        WritableMap result = Arguments.createMap();
+        result.putInt("batchId", batchId);
+        result.putInt("index", index);
+        result.putString("nativeId", playbackInfo);
+        return result;
+    }
+
+    private static WritableMap makeBatchSummaryMap(int batchId, int total, int failed) {
+        WritableMap summary = Arguments.createMap();
+        summary.putInt("batchId", batchId);
+        summary.putInt("total", total);
+        summary.putInt("succeeded", total - failed);
+        summary.putInt("failed", failed);
+        return summary;
+    }
+
     private void enqueueDownload(String nativeId,
                                  ReadableMap requestOptions,
                                  EnqueueFailureCallback errorCallback,
                                  Callback successCallback) {
         try {
             // Ensure downloadOptions is available
-            // TODO remove used from store/cache
-            DownloadOptions downloadOptions = downloadOptionsStore.get(nativeId);
+            DownloadOptions downloadOptions = downloadOptionsCache.getHandedOut(nativeId);
             if (downloadOptions == null) {
                 Log.e(TAG, "download options could not be obtained");
                 errorCallback.invoke(null, "download options could not be obtained");
                 return;
             }
 
-            // Read selected tracks
-            ReadableArray selectionsArray = requestOptions.getArray("selections");
-            int[] selectedIndices = new int[selectionsArray.size()];
-            for (int i = 0; i < selectionsArray.size(); i++) {
-                selectedIndices[i] = selectionsArray.getInt(i);
+            // Read selected tracks, or select them automatically
+            final int[] selectedIndices;
+            if (hasValue(requestOptions, "selections")) {
+                ReadableArray selectionsArray = requestOptions.getArray("selections");
+                selectedIndices = new int[selectionsArray.size()];
+                for (int i = 0; i < selectionsArray.size(); i++) {
+                    selectedIndices[i] = selectionsArray.getInt(i);
+                }
+            } else if (hasValue(requestOptions, "autoSelect")) {
+                ReadableMap autoSelect = requestOptions.getMap("autoSelect");
+                long maxSizeBytes = hasValue(autoSelect, "maxSizeBytes") ?
+                        (long)autoSelect.getDouble("maxSizeBytes") : TrackAutoSelector.NO_SIZE_LIMIT;
+                int maxHeight = hasValue(autoSelect, "maxHeight") ?
+                        autoSelect.getInt("maxHeight") : TrackAutoSelector.NO_HEIGHT_LIMIT;
+                selectedIndices = new TrackAutoSelector(maxSizeBytes, maxHeight).select(downloadOptions);
+            } else {
+                throw new IllegalArgumentException("either selections or autoSelect is required");
             }
+            long estimatedBytes = TrackAutoSelector.estimateDownloadSize(downloadOptions, selectedIndices);
 
             // Obtain download location
             String downloadLocation;
             try {
-                downloadLocation = getDownloadLocation(getReactApplicationContext());
+                downloadLocation = volumeSelector.selectDownloadLocation(estimatedBytes);
             } catch (RuntimeException e) {
                 Log.e(TAG, "download location could not be obtained: " + Log.getStackTraceString(e));
                 errorCallback.invoke(e.getClass().getName(), e.getMessage());
@@ -241,50 +900,107 @@ public class VdoDownloadModule extends ReactContextBaseJavaModule implements Vdo
             // Build a DownloadRequest
             DownloadRequest request = new DownloadRequest.Builder(downloadSelections, downloadLocation).build();
 
-            VdoDownloadManager vdoDownloadManager = VdoDownloadManager.getInstance(getReactApplicationContext());
-
-            // Enqueue request to VdoDownloadManager for download
-            try {
-                vdoDownloadManager.enqueue(request);
-                successCallback.invoke();
-            } catch (IllegalArgumentException | IllegalStateException e) {
-                Log.e(TAG, "enqueue failed: " + Log.getStackTraceString(e));
-                errorCallback.invoke(e.getClass().getName(), e.getMessage());
-            }
+            // Scheduling options
+            int priority = hasValue(requestOptions, "priority") ? requestOptions.getInt("priority") : 0;
+            boolean requiresUnmetered = hasValue(requestOptions, "requiresUnmetered")
+                    && requestOptions.getBoolean("requiresUnmetered");
+            boolean requiresCharging = hasValue(requestOptions, "requiresCharging")
+                    && requestOptions.getBoolean("requiresCharging");
+            String groupId = hasValue(requestOptions, "groupId") ? requestOptions.getString("groupId") : null;
+
+            // Make room within the storage quota, then enqueue
+            String mediaId = downloadOptions.mediaInfo.mediaId;
+            withAllStatuses(statusList -> quotaManager.reserve(mediaId, estimatedBytes, statusList,
+                    new StorageQuotaManager.ReserveCallback() {
+                        @Override
+                        public void onReserved() {
+                            WritableMap result = Arguments.createMap();
+                            WritableArray selections = Arguments.createArray();
+                            for (int index : selectedIndices) {
+                                selections.pushInt(index);
+                            }
+                            result.putArray("selections", selections);
+                            result.putDouble("estimatedSizeBytes", estimatedBytes);
+                            enqueueRequest(request, nativeId, mediaId, priority, requiresUnmetered,
+                                    requiresCharging, groupId, errorCallback, successCallback, result);
+                        }
+
+                        @Override
+                        public void onQuotaExceeded(long requiredBytes, long availableBytes) {
+                            Log.e(TAG, "storage quota exceeded");
+                            errorCallback.invoke("StorageQuotaExceeded", "download needs " + requiredBytes
+                                    + " bytes, only " + availableBytes + " bytes available within storage quota");
+                        }
+                    }));
         } catch (RuntimeException e) {
             Log.e(TAG, "error enqueuing download request: " + Log.getStackTraceString(e));
             errorCallback.invoke(e.getClass().getName(), e.getMessage());
         }
     }
 
+    private void enqueueRequest(DownloadRequest request,
+                                String nativeId,
+                                String mediaId,
+                                int priority,
+                                boolean requiresUnmetered,
+                                boolean requiresCharging,
+                                @Nullable String groupId,
+                                EnqueueFailureCallback errorCallback,
+                                Callback successCallback,
+                                WritableMap result) {
+        VdoDownloadManager vdoDownloadManager = VdoDownloadManager.getInstance(getReactApplicationContext());
+
+        // Enqueue request to VdoDownloadManager for download
+        try {
+            vdoDownloadManager.enqueue(request);
+            downloadOptionsCache.removeHandedOut(nativeId);
+            scheduler.add(mediaId, priority, requiresUnmetered, requiresCharging);
+            if (groupId != null) {
+                groups.add(groupId, mediaId);
+            }
+            successCallback.invoke(result);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            Log.e(TAG, "enqueue failed: " + Log.getStackTraceString(e));
+            quotaManager.releaseReservation(mediaId);
+            errorCallback.invoke(e.getClass().getName(), e.getMessage());
+        }
+    }
+
+    private void sendListChange(DownloadStatusStore.Change change, @Nullable DownloadStatus downloadStatus) {
+        if (!listChangesEnabled) {
+            return;
+        }
+        WritableArray changes = Arguments.createArray();
+        changes.pushMap(statusStore.makeChangeMap(change.type, change.mediaId, downloadStatus));
+        sendListChanges(change.sequence, changes);
+    }
+
+    private void sendListChanges(long sequence, WritableArray changes) {
+        WritableMap params = Arguments.createMap();
+        params.putDouble("sequence", sequence);
+        params.putArray("changes", changes);
+        getReactApplicationContext()
+                .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                .emit("onDownloadListChanges", params);
+    }
+
     private void sendEvent(ReactContext reactContext,
                            String eventName,
                            String mediaId,
                            @Nullable DownloadStatus downloadStatus) {
+        if (!journal.isAttached() || !subscriptions.isSubscribed(mediaId)) {
+            return;
+        }
         WritableMap params = Arguments.createMap();
         params.putString("mediaId", mediaId);
         if (downloadStatus != null) {
-            params.putMap("downloadStatus", makeDownloadStatusMap(downloadStatus));
+            params.putMap("downloadStatus", statusMapper.makeMap(downloadStatus));
         }
         reactContext
                 .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
                 .emit(eventName, params);
     }
 
-    private String getDownloadLocation(@Nonnull Context context) {
-        String downloadLocation = context.getExternalFilesDir(null).getPath() + File.separator + DEFAULT_DOWNLOAD_DIRECTORY_NAME;
-
-        // Ensure download directory is created
-        File dlLocation = new File(downloadLocation);
-        if (!(dlLocation.exists() && dlLocation.isDirectory())) {
-            // Directory not created yet; let's create it
-            if (!dlLocation.mkdir()) {
-                throw new RuntimeException("failed to create storage directory");
-            }
-        }
-        return downloadLocation;
-    }
-
     /**
      * Helper class to enforce enqueue failure callback arguments.
      */
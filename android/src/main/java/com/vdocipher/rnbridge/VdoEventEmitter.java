@@ -1,12 +1,18 @@
 package com.vdocipher.rnbridge;
 
 import androidx.annotation.StringDef;
+import android.view.Choreographer;
 import android.view.View;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReactContext;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.uimanager.UIManagerHelper;
+import com.facebook.react.uimanager.UIManagerModule;
+import com.facebook.react.uimanager.common.UIManagerType;
+import com.facebook.react.uimanager.common.ViewUtil;
+import com.facebook.react.uimanager.events.EventDispatcher;
 import com.facebook.react.uimanager.events.RCTEventEmitter;
 import com.vdocipher.aegis.media.ErrorDescription;
 import com.vdocipher.aegis.media.MediaInfo;
@@ -16,6 +22,11 @@ import static com.vdocipher.rnbridge.Utils.*;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.Nullable;
 
 class VdoEventEmitter {
     private static final String EVENT_INIT_SUCCESS = "onInitSuccess";
@@ -33,6 +44,7 @@ class VdoEventEmitter {
     private static final String EVENT_PLAYBACK_PROPERTIES = "onVdoPlaybackProperties";
     private static final String EVENT_ENTER_FULLSCREEN = "onVdoEnterFullscreen";
     private static final String EVENT_EXIT_FULLSCREEN = "onVdoExitFullscreen";
+    private static final String EVENT_PLAYBACK_FRAME = "onVdoPlaybackFrame";
 
     static final String[] EVENTS = {
             EVENT_INIT_SUCCESS, EVENT_INIT_FAILURE,
@@ -43,7 +55,8 @@ class VdoEventEmitter {
             EVENT_MEDIA_ENDED,
             EVENT_ERROR,
             EVENT_PLAYBACK_PROPERTIES,
-            EVENT_ENTER_FULLSCREEN, EVENT_EXIT_FULLSCREEN
+            EVENT_ENTER_FULLSCREEN, EVENT_EXIT_FULLSCREEN,
+            EVENT_PLAYBACK_FRAME
     };
 
     @Retention(RetentionPolicy.SOURCE)
@@ -55,7 +68,8 @@ class VdoEventEmitter {
             EVENT_MEDIA_ENDED,
             EVENT_ERROR,
             EVENT_PLAYBACK_PROPERTIES,
-            EVENT_ENTER_FULLSCREEN, EVENT_EXIT_FULLSCREEN})
+            EVENT_ENTER_FULLSCREEN, EVENT_EXIT_FULLSCREEN,
+            EVENT_PLAYBACK_FRAME})
     @interface VdoEvent {}
 
     private static final String EVENT_PROP_RESTORED = "restored";
@@ -68,30 +82,166 @@ class VdoEventEmitter {
     private static final String EVENT_PROP_ORIENTATION = "orientation";
     private static final String EVENT_PROP_AVAILABLE_TRACKS = "availableTracks";
     private static final String EVENT_PROP_SELECTED_TRACKS = "selectedTracks";
+    private static final String EVENT_PROP_SELECTED_TRACK_IDS = "selectedTrackIds";
+    private static final String EVENT_PROP_TRACK_CATALOGUE_VERSION = "catalogueVersion";
     private static final String EVENT_PROP_PLAY_WHEN_READY = "playWhenReady";
     private static final String EVENT_PROP_PLAYER_STATE = "playerState";
     private static final String EVENT_PROP_PLAYBACK_SPEED = "playbackSpeed";
 
     private static final String EVENT_PROP_ERROR_DESCRIPTION = "errorDescription";
 
+    private static final String EVENT_PROP_FRAME = "frame";
+
+    // playback frame layout; must match the decoder in VdoPlayerView.js
+    private static final int FRAME_DIRTY = 0;
+    private static final int FRAME_CURRENT_TIME = 1;
+    private static final int FRAME_BUFFER_TIME = 2;
+    private static final int FRAME_PLAYER_STATE = 3;
+    private static final int FRAME_PLAY_WHEN_READY = 4;
+    private static final int FRAME_PLAYBACK_SPEED = 5;
+    private static final int FRAME_SIZE = 6;
+
+    private static final int DIRTY_PROGRESS = 1;
+    private static final int DIRTY_BUFFER = 1 << 1;
+    private static final int DIRTY_PLAYER_STATE = 1 << 2;
+    private static final int DIRTY_PLAYBACK_SPEED = 1 << 3;
+
+    // player state is sent in a frame as an index into this array
+    private static final String[] FRAME_PLAYER_STATES = {"idle", "buffering", "ready", "ended"};
+
+    private static final long NONE = -1;
+
+    private final ReactContext context;
     private final RCTEventEmitter eventEmitter;
     private int viewId = View.NO_ID;
+    private int surfaceId = View.NO_ID;
+    @Nullable
+    private EventDispatcher eventDispatcher;
+
+    // progress and buffer updates are rate limited if an interval is set; only the latest
+    // value is kept and sent on the first frame after the interval has elapsed, with the frame
+    // callback delayed until then so that no frames are requested in between
+    private int progressIntervalMs = 0;
+    private int bufferUpdateIntervalMs = 0;
+    private long pendingProgressMs = NONE;
+    private long pendingBufferTimeMs = NONE;
+    private long lastProgressSentNanos = 0;
+    private long lastBufferUpdateSentNanos = 0;
+    private boolean frameCallbackPosted = false;
+
+    // available tracks are sent to js once per catalogue version, after which only
+    // the ids of the selected tracks are sent
+    private int trackCatalogueVersion = 0;
+    @Nullable
+    private int[] trackCatalogueIds = null;
+    @Nullable
+    private int[] lastSelectedTrackIds = null;
+
+    // events that have a handler in js; null if unknown, in which case all events are sent
+    @Nullable
+    private Set<String> subscribedEvents = null;
+
+    // in playback frame mode, progress, buffer, state and speed updates are packed in a reused
+    // frame and sent together as a single event at most once per interval
+    private int playbackFrameIntervalMs = 0;
+    private final double[] frame = new double[FRAME_SIZE];
+    private int frameDirty = 0;
+    private long lastFrameSentNanos = 0;
+
+    private final Choreographer.FrameCallback flushCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            frameCallbackPosted = false;
+            flushPending(frameTimeNanos, false);
+            flushFrame(frameTimeNanos, false);
+            if (pendingProgressMs != NONE || pendingBufferTimeMs != NONE || frameDirty != 0) {
+                postFlush();
+            }
+        }
+    };
 
     VdoEventEmitter(ReactContext context) {
+        this.context = context;
         eventEmitter = context.getJSModule(RCTEventEmitter.class);
     }
 
     void setViewId(int viewId) {
         this.viewId = viewId;
+        if (ViewUtil.getUIManagerType(viewId) == UIManagerType.FABRIC) {
+            surfaceId = UIManagerHelper.getSurfaceId(context);
+            eventDispatcher = UIManagerHelper.getEventDispatcherForReactTag(context, viewId);
+        } else {
+            surfaceId = View.NO_ID;
+            UIManagerModule uiManager = context.getNativeModule(UIManagerModule.class);
+            eventDispatcher = uiManager != null ? uiManager.getEventDispatcher() : null;
+        }
+    }
+
+    /**
+     * Restricts the events sent to js to the provided ones. Events that are not subscribed
+     * are neither built nor sent over the bridge.
+     *
+     * @param events names of the subscribed events, or null to send all events
+     */
+    void setSubscribedEvents(@Nullable String[] events) {
+        subscribedEvents = events != null ? new HashSet<>(Arrays.asList(events)) : null;
+    }
+
+    /**
+     * @param intervalMs minimum interval between two progress events; 0 sends every update
+     */
+    void setProgressInterval(int intervalMs) {
+        progressIntervalMs = Math.max(0, intervalMs);
+        if (progressIntervalMs == 0) {
+            flushPending(System.nanoTime(), true);
+        }
+    }
+
+    /**
+     * @param intervalMs minimum interval between two buffer update events; 0 sends every update
+     */
+    void setBufferUpdateInterval(int intervalMs) {
+        bufferUpdateIntervalMs = Math.max(0, intervalMs);
+        if (bufferUpdateIntervalMs == 0) {
+            flushPending(System.nanoTime(), true);
+        }
+    }
+
+    /**
+     * @param intervalMs interval between two playback frame events; 0 disables playback frames
+     *                   and sends the individual progress, buffer, state and speed events instead
+     */
+    void setPlaybackFrameInterval(int intervalMs) {
+        flushFrame(System.nanoTime(), true);
+        playbackFrameIntervalMs = Math.max(0, intervalMs);
+    }
+
+    /**
+     * Drops any pending rate limited update and stops frame callbacks.
+     */
+    void release() {
+        pendingProgressMs = NONE;
+        pendingBufferTimeMs = NONE;
+        frameDirty = 0;
+        if (frameCallbackPosted) {
+            Choreographer.getInstance().removeFrameCallback(flushCallback);
+            frameCallbackPosted = false;
+        }
     }
 
     void initSuccess(boolean restored) {
+        if (!isSubscribed(EVENT_INIT_SUCCESS)) {
+            return;
+        }
         WritableMap event = Arguments.createMap();
         event.putBoolean(EVENT_PROP_RESTORED, restored);
         receiveEvent(EVENT_INIT_SUCCESS, event);
     }
 
     void initFailure(ErrorDescription errorDescription) {
+        if (!isSubscribed(EVENT_INIT_FAILURE)) {
+            return;
+        }
         WritableMap errDes = makeErrorDescriptionMap(errorDescription);
 
         WritableMap event = Arguments.createMap();
@@ -100,11 +250,20 @@ class VdoEventEmitter {
     }
 
     void loading(VdoInitParams vdoInitParams) {
+        // a new media will send its own track catalogue
+        trackCatalogueIds = null;
+        lastSelectedTrackIds = null;
+        if (!isSubscribed(EVENT_LOADING)) {
+            return;
+        }
         receiveEvent(EVENT_LOADING, null);
     }
 
     void loaded(VdoInitParams vdoInitParams, MediaInfo mediaInfo) {
-        WritableMap mInfo = makeMediaInfoMap(mediaInfo);
+        if (!isSubscribed(EVENT_LOADED)) {
+            return;
+        }
+        WritableMap mInfo = makeCachedMediaInfoMap(mediaInfo);
 
         WritableMap event = Arguments.createMap();
         event.putMap(EVENT_PROP_MEDIA_INFO, mInfo);
@@ -112,6 +271,9 @@ class VdoEventEmitter {
     }
 
     void loadError(VdoInitParams vdoInitParams, ErrorDescription errorDescription) {
+        if (!isSubscribed(EVENT_LOAD_ERROR)) {
+            return;
+        }
         WritableMap errDes = makeErrorDescriptionMap(errorDescription);
 
         WritableMap event = Arguments.createMap();
@@ -120,47 +282,137 @@ class VdoEventEmitter {
     }
 
     void playerStateChanged(boolean playWhenReady, int playerState) {
+        if (!isSubscribed(EVENT_PLAYER_STATE_CHANGED)) {
+            flushPending(System.nanoTime(), true);
+            flushFrame(System.nanoTime(), true);
+            return;
+        }
+        if (playbackFrameIntervalMs > 0) {
+            frame[FRAME_PLAYER_STATE] = framePlayerState(stateName(playerState));
+            frame[FRAME_PLAY_WHEN_READY] = playWhenReady ? 1 : 0;
+            frameDirty |= DIRTY_PLAYER_STATE;
+            flushFrame(System.nanoTime(), true);
+            return;
+        }
+        flushPending(System.nanoTime(), true);
         WritableMap event = Arguments.createMap();
         event.putBoolean(EVENT_PROP_PLAY_WHEN_READY, playWhenReady);
         event.putString(EVENT_PROP_PLAYER_STATE, stateName(playerState));
         receiveEvent(EVENT_PLAYER_STATE_CHANGED, event);
     }
 
-    void seekTo(long timeMs) {}
+    void seekTo(long timeMs) {
+        if (!isSubscribed(EVENT_PROGRESS)) {
+            return;
+        }
+        if (playbackFrameIntervalMs > 0) {
+            frame[FRAME_CURRENT_TIME] = timeMs;
+            frameDirty |= DIRTY_PROGRESS;
+            flushFrame(System.nanoTime(), true);
+            return;
+        }
+        // report the seek position right away if progress updates are being held back
+        if (progressIntervalMs > 0) {
+            pendingProgressMs = timeMs;
+            flushPending(System.nanoTime(), true);
+        }
+    }
 
     void progress(long timeMs) {
-        WritableMap event = Arguments.createMap();
-        event.putInt(EVENT_PROP_CURRENT_TIME, (int)timeMs);
-        receiveEvent(EVENT_PROGRESS, event);
+        if (!isSubscribed(EVENT_PROGRESS)) {
+            return;
+        }
+        if (playbackFrameIntervalMs > 0) {
+            frame[FRAME_CURRENT_TIME] = timeMs;
+            frameDirty |= DIRTY_PROGRESS;
+            postFlush();
+        } else if (progressIntervalMs > 0) {
+            pendingProgressMs = timeMs;
+            postFlush();
+        } else {
+            sendProgress(timeMs);
+        }
     }
 
     void bufferUpdate(long bufferTimeMs) {
-        WritableMap event = Arguments.createMap();
-        event.putInt(EVENT_PROP_BUFFER_TIME, (int)bufferTimeMs);
-        receiveEvent(EVENT_BUFFER_UPDATE, event);
+        if (!isSubscribed(EVENT_BUFFER_UPDATE)) {
+            return;
+        }
+        if (playbackFrameIntervalMs > 0) {
+            frame[FRAME_BUFFER_TIME] = bufferTimeMs;
+            frameDirty |= DIRTY_BUFFER;
+            postFlush();
+        } else if (bufferUpdateIntervalMs > 0) {
+            pendingBufferTimeMs = bufferTimeMs;
+            postFlush();
+        } else {
+            sendBufferUpdate(bufferTimeMs);
+        }
     }
 
     void speedChanged(float speed) {
+        if (!isSubscribed(EVENT_PLAYBACK_SPEED_CHANGED)) {
+            return;
+        }
+        if (playbackFrameIntervalMs > 0) {
+            frame[FRAME_PLAYBACK_SPEED] = speed;
+            frameDirty |= DIRTY_PLAYBACK_SPEED;
+            postFlush();
+            return;
+        }
         WritableMap event = Arguments.createMap();
         event.putDouble(EVENT_PROP_PLAYBACK_SPEED, (double)speed);
         receiveEvent(EVENT_PLAYBACK_SPEED_CHANGED, event);
     }
 
     void tracksChanged(Track[] availableTracks, Track[] selectedTracks) {
-        WritableArray available = makeTrackMapArray(availableTracks);
-        WritableArray selected = makeTrackMapArray(selectedTracks);
+        if (!isSubscribed(EVENT_TRACKS_CHANGED)) {
+            // js will need the full catalogue if it subscribes later
+            trackCatalogueIds = null;
+            lastSelectedTrackIds = null;
+            return;
+        }
+        int[] availableIds = trackIds(availableTracks);
+        int[] selectedIds = trackIds(selectedTracks);
 
         WritableMap event = Arguments.createMap();
-        event.putArray(EVENT_PROP_AVAILABLE_TRACKS, available);
-        event.putArray(EVENT_PROP_SELECTED_TRACKS, selected);
+        if (trackCatalogueIds == null || !Arrays.equals(trackCatalogueIds, availableIds)) {
+            // available tracks changed; send the full catalogue once
+            trackCatalogueIds = availableIds;
+            trackCatalogueVersion++;
+            event.putArray(EVENT_PROP_AVAILABLE_TRACKS, makeTrackMapArray(availableTracks));
+        } else if (Arrays.equals(lastSelectedTrackIds, selectedIds)) {
+            return;
+        }
+        lastSelectedTrackIds = selectedIds;
+
+        event.putInt(EVENT_PROP_TRACK_CATALOGUE_VERSION, trackCatalogueVersion);
+        if (containsAll(trackCatalogueIds, selectedIds)) {
+            WritableArray selected = Arguments.createArray();
+            for (int id : selectedIds) {
+                selected.pushInt(id);
+            }
+            event.putArray(EVENT_PROP_SELECTED_TRACK_IDS, selected);
+        } else {
+            // selection includes tracks outside the catalogue; send them in full
+            event.putArray(EVENT_PROP_SELECTED_TRACKS, makeTrackMapArray(selectedTracks));
+        }
         receiveEvent(EVENT_TRACKS_CHANGED, event);
     }
 
     void mediaEnded(VdoInitParams vdoInitParams) {
+        flushPending(System.nanoTime(), true);
+        flushFrame(System.nanoTime(), true);
+        if (!isSubscribed(EVENT_MEDIA_ENDED)) {
+            return;
+        }
         receiveEvent(EVENT_MEDIA_ENDED, null);
     }
 
     void error(VdoInitParams vdoInitParams, ErrorDescription errorDescription) {
+        if (!isSubscribed(EVENT_ERROR)) {
+            return;
+        }
         WritableMap errDes = makeErrorDescriptionMap(errorDescription);
 
         WritableMap event = Arguments.createMap();
@@ -169,21 +421,162 @@ class VdoEventEmitter {
     }
 
     void enterFullscreen() {
+        if (!isSubscribed(EVENT_ENTER_FULLSCREEN)) {
+            return;
+        }
         receiveEvent(EVENT_ENTER_FULLSCREEN, null);
     }
 
     void exitFullscreen() {
+        if (!isSubscribed(EVENT_EXIT_FULLSCREEN)) {
+            return;
+        }
         receiveEvent(EVENT_EXIT_FULLSCREEN, null);
     }
 
     void playbackProperties(long totalPlayed, long totalCovered) {
+        if (!isSubscribed(EVENT_PLAYBACK_PROPERTIES)) {
+            return;
+        }
         WritableMap event = Arguments.createMap();
         event.putInt("totalPlayed", (int)totalPlayed);
         event.putInt("totalCovered", (int)totalCovered);
         receiveEvent(EVENT_PLAYBACK_PROPERTIES, event);
     }
 
+    private void sendProgress(long timeMs) {
+        WritableMap event = Arguments.createMap();
+        event.putInt(EVENT_PROP_CURRENT_TIME, (int)timeMs);
+        receiveEvent(EVENT_PROGRESS, event);
+    }
+
+    private void sendBufferUpdate(long bufferTimeMs) {
+        WritableMap event = Arguments.createMap();
+        event.putInt(EVENT_PROP_BUFFER_TIME, (int)bufferTimeMs);
+        receiveEvent(EVENT_BUFFER_UPDATE, event);
+    }
+
+    private void postFlush() {
+        if (!frameCallbackPosted) {
+            frameCallbackPosted = true;
+            Choreographer.getInstance().postFrameCallbackDelayed(flushCallback, flushDelayMs(System.nanoTime()));
+        }
+    }
+
+    /**
+     * @return time until the earliest pending update is due, rounded up; 0 if one is due now
+     */
+    private long flushDelayMs(long nowNanos) {
+        long delayNanos = Long.MAX_VALUE;
+        if (pendingProgressMs != NONE) {
+            delayNanos = Math.min(delayNanos, lastProgressSentNanos + progressIntervalMs * 1_000_000L - nowNanos);
+        }
+        if (pendingBufferTimeMs != NONE) {
+            delayNanos = Math.min(delayNanos, lastBufferUpdateSentNanos + bufferUpdateIntervalMs * 1_000_000L - nowNanos);
+        }
+        if (frameDirty != 0) {
+            delayNanos = Math.min(delayNanos, lastFrameSentNanos + playbackFrameIntervalMs * 1_000_000L - nowNanos);
+        }
+        if (delayNanos == Long.MAX_VALUE || delayNanos <= 0) {
+            return 0;
+        }
+        return (delayNanos + 999_999L) / 1_000_000L;
+    }
+
+    /**
+     * Sends pending progress and buffer updates whose interval has elapsed, or all of them if forced.
+     */
+    private void flushPending(long nowNanos, boolean force) {
+        if (pendingProgressMs != NONE
+                && (force || nowNanos - lastProgressSentNanos >= progressIntervalMs * 1_000_000L)) {
+            long timeMs = pendingProgressMs;
+            pendingProgressMs = NONE;
+            lastProgressSentNanos = nowNanos;
+            sendProgress(timeMs);
+        }
+        if (pendingBufferTimeMs != NONE
+                && (force || nowNanos - lastBufferUpdateSentNanos >= bufferUpdateIntervalMs * 1_000_000L)) {
+            long bufferTimeMs = pendingBufferTimeMs;
+            pendingBufferTimeMs = NONE;
+            lastBufferUpdateSentNanos = nowNanos;
+            sendBufferUpdate(bufferTimeMs);
+        }
+    }
+
+    /**
+     * Sends the playback frame if it has changed and its interval has elapsed, or right away if forced.
+     */
+    private void flushFrame(long nowNanos, boolean force) {
+        if (frameDirty == 0
+                || (!force && nowNanos - lastFrameSentNanos < playbackFrameIntervalMs * 1_000_000L)) {
+            return;
+        }
+        frame[FRAME_DIRTY] = frameDirty;
+        frameDirty = 0;
+        lastFrameSentNanos = nowNanos;
+
+        WritableArray values = Arguments.createArray();
+        for (double value : frame) {
+            values.pushDouble(value);
+        }
+        WritableMap event = Arguments.createMap();
+        event.putArray(EVENT_PROP_FRAME, values);
+        receiveEvent(EVENT_PLAYBACK_FRAME, event);
+    }
+
+    private boolean isSubscribed(@VdoEvent String type) {
+        if (subscribedEvents == null) {
+            return true;
+        }
+        // playback frames carry these events, so they also need the frame event itself
+        if (playbackFrameIntervalMs > 0 && (EVENT_PROGRESS.equals(type) || EVENT_BUFFER_UPDATE.equals(type)
+                || EVENT_PLAYER_STATE_CHANGED.equals(type) || EVENT_PLAYBACK_SPEED_CHANGED.equals(type))) {
+            return subscribedEvents.contains(type) && subscribedEvents.contains(EVENT_PLAYBACK_FRAME);
+        }
+        return subscribedEvents.contains(type);
+    }
+
+    private static int[] trackIds(Track[] tracks) {
+        int[] ids = new int[tracks.length];
+        for (int i = 0; i < tracks.length; i++) {
+            ids[i] = tracks[i].id;
+        }
+        return ids;
+    }
+
+    private static boolean containsAll(int[] ids, int[] subset) {
+        outer:
+        for (int id : subset) {
+            for (int other : ids) {
+                if (other == id) {
+                    continue outer;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static int framePlayerState(String stateName) {
+        for (int i = 0; i < FRAME_PLAYER_STATES.length; i++) {
+            if (FRAME_PLAYER_STATES[i].equals(stateName)) {
+                return i;
+            }
+        }
+        return FRAME_PLAYER_STATES.length - 1;
+    }
+
     private void receiveEvent(@VdoEvent String type, WritableMap event) {
-        eventEmitter.receiveEvent(viewId, type, event);
+        if (eventDispatcher == null) {
+            eventEmitter.receiveEvent(viewId, type, event);
+            return;
+        }
+        // js only needs the latest progress and buffer update; let the dispatcher drop stale ones
+        boolean coalesce = EVENT_PROGRESS.equals(type) || EVENT_BUFFER_UPDATE.equals(type);
+        if (surfaceId != View.NO_ID) {
+            eventDispatcher.dispatchEvent(new VdoPlayerEvent(surfaceId, viewId, type, event, coalesce));
+        } else {
+            eventDispatcher.dispatchEvent(new VdoPlayerEvent(viewId, type, event, coalesce));
+        }
     }
 }
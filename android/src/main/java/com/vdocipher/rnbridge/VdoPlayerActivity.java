@@ -27,7 +27,7 @@ public class VdoPlayerActivity extends AppCompatActivity implements VdoPlayer.In
     private VdoPlayer player;
     private VdoPlayerSupportFragment playerFragment;
     private VdoPlayerControlView playerControlView;
-    private String eventLogString = "";
+    private final PlaybackFlightRecorder flightRecorder = PlaybackFlightRecorder.getInstance();
 
     private int currentOrientation;
 
@@ -113,7 +113,10 @@ public class VdoPlayerActivity extends AppCompatActivity implements VdoPlayer.In
 
     private void log(String msg) {
         Log.i(TAG, msg);
-        eventLogString += (msg + "\n");
+    }
+
+    private void record(int code, long arg0, long arg1) {
+        flightRecorder.record(PlaybackFlightRecorder.SOURCE_ACTIVITY, code, arg0, arg1);
     }
 
     private void showControls(boolean show) {
@@ -132,7 +135,7 @@ public class VdoPlayerActivity extends AppCompatActivity implements VdoPlayer.In
     @Override
     public void onInitializationSuccess(VdoPlayer.PlayerHost playerHost, VdoPlayer player, boolean wasRestored) {
         Log.i(TAG, "onInitializationSuccess");
-        log("onInitializationSuccess");
+        record(PlaybackFlightRecorder.INIT_SUCCESS, 0, 0);
         this.player = player;
         player.addPlaybackEventListener(playbackListener);
         playerControlView.setPlayer(player);
@@ -149,51 +152,58 @@ public class VdoPlayerActivity extends AppCompatActivity implements VdoPlayer.In
     @Override
     public void onInitializationFailure(VdoPlayer.PlayerHost playerHost, ErrorDescription errorDescription) {
         String msg = "onInitializationFailure: errorCode = " + errorDescription.errorCode + ": " + errorDescription.errorMsg;
-        log(msg);
         Log.e(TAG, msg);
+        record(PlaybackFlightRecorder.INIT_FAILURE, errorDescription.errorCode, errorDescription.httpStatusCode);
         Toast.makeText(VdoPlayerActivity.this, "initialization failure: " + errorDescription.errorMsg, Toast.LENGTH_LONG).show();
     }
 
     private VdoPlayer.PlaybackEventListener playbackListener = new VdoPlayer.PlaybackEventListener() {
         @Override
         public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
-            log(Utils.playbackStateString(playWhenReady, playbackState));
+            record(PlaybackFlightRecorder.PLAYER_STATE, playbackState, playWhenReady ? 1 : 0);
         }
 
         @Override
         public void onTracksChanged(Track[] tracks, Track[] tracks1) {
-            log("onTracksChanged");
+            record(PlaybackFlightRecorder.TRACKS_CHANGED, tracks.length, tracks1.length);
         }
 
         @Override
-        public void onBufferUpdate(long bufferTime) {}
+        public void onBufferUpdate(long bufferTime) {
+            record(PlaybackFlightRecorder.BUFFER_UPDATE, bufferTime, 0);
+        }
 
         @Override
-        public void onSeekTo(long millis) {}
+        public void onSeekTo(long millis) {
+            record(PlaybackFlightRecorder.SEEK, millis, 0);
+        }
 
         @Override
-        public void onProgress(long millis) {}
+        public void onProgress(long millis) {
+            record(PlaybackFlightRecorder.PROGRESS, millis, 0);
+        }
 
         @Override
         public void onPlaybackSpeedChanged(float speed) {
-            log("onPlaybackSpeedChanged " + speed);
+            record(PlaybackFlightRecorder.SPEED_CHANGED, (long)(speed * 1000), 0);
         }
 
         @Override
         public void onLoading(VdoPlayer.VdoInitParams vdoInitParams) {
-            log("onLoading");
+            record(PlaybackFlightRecorder.LOADING, 0, 0);
         }
 
         @Override
         public void onLoadError(VdoPlayer.VdoInitParams vdoInitParams, ErrorDescription errorDescription) {
             String err = "onLoadError code: " + errorDescription.errorCode;
             Log.e(TAG, err);
-            log(err);
+            record(PlaybackFlightRecorder.LOAD_ERROR, errorDescription.errorCode, errorDescription.httpStatusCode);
         }
 
         @Override
         public void onLoaded(VdoPlayer.VdoInitParams vdoInitParams) {
-            log("onLoaded");
+            record(PlaybackFlightRecorder.LOADED, player.getDuration(), 0);
+            StorageQuotaManager.recordPlayback(VdoPlayerActivity.this, player.getCurrentMedia());
             player.setPlayWhenReady(true);
         }
 
@@ -201,12 +211,12 @@ public class VdoPlayerActivity extends AppCompatActivity implements VdoPlayer.In
         public void onError(VdoPlayer.VdoInitParams vdoParams, ErrorDescription errorDescription) {
             String err = "onError code " + errorDescription.errorCode + ": " + errorDescription.errorMsg;
             Log.e(TAG, err);
-            log(err);
+            record(PlaybackFlightRecorder.ERROR, errorDescription.errorCode, errorDescription.httpStatusCode);
         }
 
         @Override
         public void onMediaEnded(VdoPlayer.VdoInitParams vdoInitParams) {
-            log("onMediaEnded");
+            record(PlaybackFlightRecorder.MEDIA_ENDED, 0, 0);
         }
     };
 
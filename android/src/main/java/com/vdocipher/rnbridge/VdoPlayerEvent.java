@@ -0,0 +1,67 @@
+package com.vdocipher.rnbridge;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.uimanager.events.Event;
+import com.facebook.react.uimanager.events.RCTEventEmitter;
+
+import javax.annotation.Nullable;
+
+/**
+ * An event from a {@link ReactVdoPlayerView}, dispatched through the {@code EventDispatcher}.
+ * <p>
+ * Coalescing events replace any queued event of the same name for the same view that js has
+ * not received yet, so only the latest value is delivered.
+ */
+
+class VdoPlayerEvent extends Event<VdoPlayerEvent> {
+    private final String eventName;
+    private final WritableMap eventData;
+    private final boolean coalesce;
+
+    /**
+     * Creates an event for a view in a Fabric surface.
+     */
+    VdoPlayerEvent(int surfaceId, int viewTag, String eventName, @Nullable WritableMap eventData,
+                   boolean coalesce) {
+        super(surfaceId, viewTag);
+        this.eventName = eventName;
+        this.eventData = eventData != null ? eventData : Arguments.createMap();
+        this.coalesce = coalesce;
+    }
+
+    /**
+     * Creates an event for a view managed by the legacy ui manager.
+     */
+    VdoPlayerEvent(int viewTag, String eventName, @Nullable WritableMap eventData, boolean coalesce) {
+        super(viewTag);
+        this.eventName = eventName;
+        this.eventData = eventData != null ? eventData : Arguments.createMap();
+        this.coalesce = coalesce;
+    }
+
+    @Override
+    public String getEventName() {
+        return eventName;
+    }
+
+    @Override
+    public boolean canCoalesce() {
+        return coalesce;
+    }
+
+    @Override
+    public short getCoalescingKey() {
+        return 0;
+    }
+
+    @Override
+    protected WritableMap getEventData() {
+        return eventData;
+    }
+
+    @Override
+    public void dispatch(RCTEventEmitter rctEventEmitter) {
+        rctEventEmitter.receiveEvent(getViewTag(), eventName, eventData);
+    }
+}
@@ -3,12 +3,20 @@ package com.vdocipher.rnbridge;
 import android.content.Intent;
 import android.app.Activity;
 
+import com.facebook.react.bridge.Callback;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
 import com.vdocipher.aegis.player.VdoPlayer.VdoInitParams;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
 import static com.vdocipher.rnbridge.Utils.getTechOverride;
 
 public class VdocipherRnBridgeModule extends ReactContextBaseJavaModule {
@@ -30,6 +38,44 @@ public class VdocipherRnBridgeModule extends ReactContextBaseJavaModule {
     android.widget.Toast.makeText(getReactApplicationContext(), "Hello", android.widget.Toast.LENGTH_SHORT).show();
   }
 
+  /**
+   * Synchronously reads the latest playback state of an embedded player view.
+   *
+   * @param viewTag react tag of the player view
+   * @return the playback state, or null if no such player view exists
+   */
+  @ReactMethod(isBlockingSynchronousMethod = true)
+  public WritableMap getPlaybackState(int viewTag) {
+    PlaybackSnapshot snapshot = PlaybackSnapshot.forView(viewTag);
+    return snapshot != null ? snapshot.toMap() : null;
+  }
+
+  /**
+   * Provides recent playback events of all players as a json array of
+   * [timestamp, event, source, arg0, arg1] arrays.
+   */
+  @ReactMethod
+  public void dumpPlaybackEvents(Callback successCallback) {
+    successCallback.invoke(PlaybackFlightRecorder.getInstance().dumpJson());
+  }
+
+  /**
+   * Writes recent playback events of all players to a json file in the app cache directory.
+   */
+  @ReactMethod
+  public void dumpPlaybackEventsToFile(Callback errorCallback, Callback successCallback) {
+    File file = new File(reactContext.getCacheDir(),
+            "vdo_playback_events_" + System.currentTimeMillis() + ".json");
+    try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+      writer.write(PlaybackFlightRecorder.getInstance().dumpJson());
+    } catch (IOException e) {
+      android.util.Log.e("VdoRnBridgeModule", "error writing playback events: " + android.util.Log.getStackTraceString(e));
+      errorCallback.invoke(e.getClass().getName(), e.getMessage());
+      return;
+    }
+    successCallback.invoke(file.getPath());
+  }
+
   // todo error event handling
   @ReactMethod
   public void startVideoScreen(ReadableMap embedParams) {
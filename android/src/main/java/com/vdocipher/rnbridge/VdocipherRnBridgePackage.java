@@ -2,31 +2,84 @@ package com.vdocipher.rnbridge;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import com.facebook.react.ReactPackage;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.facebook.react.TurboReactPackage;
 import com.facebook.react.bridge.NativeModule;
 import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.module.model.ReactModuleInfo;
+import com.facebook.react.module.model.ReactModuleInfoProvider;
 import com.facebook.react.uimanager.ViewManager;
 import com.facebook.react.bridge.JavaScriptModule;
 
-public class VdocipherRnBridgePackage implements ReactPackage {
+import javax.annotation.Nullable;
+
+/**
+ * Creates native modules lazily, when js first uses them, instead of at bridge startup.
+ * <p>
+ * The time taken to create each module is logged at debug level, to measure its cost at startup.
+ */
+public class VdocipherRnBridgePackage extends TurboReactPackage {
+    private static final String TAG = "VdocipherRnBridgePackage";
+
+    private static final String BRIDGE_MODULE_NAME = "VdocipherRnBridge";
+    private static final String DOWNLOAD_MODULE_NAME = "VdoDownload";
+
+    @Nullable
     @Override
-    public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
-      return Arrays.<NativeModule>asList(
-              new VdocipherRnBridgeModule(reactContext),
-              new VdoDownloadModule(reactContext));
+    public NativeModule getModule(String name, ReactApplicationContext reactContext) {
+        long start = SystemClock.elapsedRealtime();
+        NativeModule module;
+        switch (name) {
+            case BRIDGE_MODULE_NAME:
+                module = new VdocipherRnBridgeModule(reactContext);
+                break;
+            case DOWNLOAD_MODULE_NAME:
+                module = new VdoDownloadModule(reactContext);
+                break;
+            default:
+                return null;
+        }
+        Log.d(TAG, "created " + name + " in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        return module;
+    }
+
+    @Override
+    public ReactModuleInfoProvider getReactModuleInfoProvider() {
+        return () -> {
+            Map<String, ReactModuleInfo> moduleInfos = new HashMap<>();
+            moduleInfos.put(BRIDGE_MODULE_NAME, makeModuleInfo(BRIDGE_MODULE_NAME, VdocipherRnBridgeModule.class));
+            moduleInfos.put(DOWNLOAD_MODULE_NAME, makeModuleInfo(DOWNLOAD_MODULE_NAME, VdoDownloadModule.class));
+            return moduleInfos;
+        };
     }
 
     // Deprecated from RN 0.47
     public List<Class<? extends JavaScriptModule>> createJSModules() {
-      return Collections.emptyList();
+        return Collections.emptyList();
     }
 
     @Override
     public List<ViewManager> createViewManagers(ReactApplicationContext reactContext) {
-      return Arrays.<ViewManager>asList(
-              new ReactVdoPlayerViewManager()
-      );
+        return Arrays.<ViewManager>asList(
+                new ReactVdoPlayerViewManager()
+        );
+    }
+
+    private static ReactModuleInfo makeModuleInfo(String name, Class<? extends NativeModule> moduleClass) {
+        return new ReactModuleInfo(
+                name,
+                moduleClass.getName(),
+                false, // canOverrideExistingModule
+                false, // needsEagerInit
+                false, // hasConstants
+                false, // isCxxModule
+                false  // isTurboModule
+        );
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,81 @@
+/**
+ * This code was generated by [react-native-codegen](https://www.npmjs.com/package/react-native-codegen).
+ *
+ * Do not edit this file as changes may cause incorrect behavior and will be lost
+ * once the code is regenerated.
+ *
+ * @generated by codegen project: GeneratePropsJavaDelegate.js
+ */
+
+package com.facebook.react.viewmanagers;
+
+import android.view.View;
+import androidx.annotation.Nullable;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.uimanager.BaseViewManagerDelegate;
+import com.facebook.react.uimanager.BaseViewManagerInterface;
+
+public class RCTVdoPlayerViewManagerDelegate<T extends View, U extends BaseViewManagerInterface<T> & RCTVdoPlayerViewManagerInterface<T>> extends BaseViewManagerDelegate<T, U> {
+  public RCTVdoPlayerViewManagerDelegate(U viewManager) {
+    super(viewManager);
+  }
+  @Override
+  public void setProperty(T view, String propName, @Nullable Object value) {
+    switch (propName) {
+      case "embedInfo":
+        mViewManager.setEmbedInfo(view, (ReadableMap) value);
+        break;
+      case "showNativeControls":
+        mViewManager.setShowNativeControls(view, value == null ? true : (boolean) value);
+        break;
+      case "playWhenReady":
+        mViewManager.setPlayWhenReady(view, value == null ? true : (boolean) value);
+        break;
+      case "playbackSpeed":
+        mViewManager.setPlaybackSpeed(view, value == null ? 1.0f : ((Double) value).floatValue());
+        break;
+      case "progressIntervalMs":
+        mViewManager.setProgressIntervalMs(view, value == null ? 0 : ((Double) value).intValue());
+        break;
+      case "bufferUpdateIntervalMs":
+        mViewManager.setBufferUpdateIntervalMs(view, value == null ? 0 : ((Double) value).intValue());
+        break;
+      case "playbackFrameIntervalMs":
+        mViewManager.setPlaybackFrameIntervalMs(view, value == null ? 0 : ((Double) value).intValue());
+        break;
+      case "subscribedEvents":
+        mViewManager.setSubscribedEvents(view, (ReadableArray) value);
+        break;
+      case "seek":
+        mViewManager.setSeek(view, value == null ? 0 : ((Double) value).intValue());
+        break;
+      case "fullscreen":
+        mViewManager.setFullscreen(view, value == null ? false : (boolean) value);
+        break;
+      case "playbackProperties":
+        mViewManager.setPlaybackProperties(view, value == null ? 0 : ((Double) value).intValue());
+        break;
+      default:
+        super.setProperty(view, propName, value);
+    }
+  }
+
+  @Override
+  public void receiveCommand(T view, String commandName, ReadableArray args) {
+    switch (commandName) {
+      case "seek":
+        mViewManager.seek(view, args.getInt(0));
+        break;
+      case "enterFullscreen":
+        mViewManager.enterFullscreen(view);
+        break;
+      case "exitFullscreen":
+        mViewManager.exitFullscreen(view);
+        break;
+      case "getPlaybackProperties":
+        mViewManager.getPlaybackProperties(view);
+        break;
+    }
+  }
+}
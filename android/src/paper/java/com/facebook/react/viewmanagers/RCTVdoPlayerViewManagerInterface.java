@@ -0,0 +1,33 @@
+/**
+ * This code was generated by [react-native-codegen](https://www.npmjs.com/package/react-native-codegen).
+ *
+ * Do not edit this file as changes may cause incorrect behavior and will be lost
+ * once the code is regenerated.
+ *
+ * @generated by codegen project: GeneratePropsJavaInterface.js
+ */
+
+package com.facebook.react.viewmanagers;
+
+import android.view.View;
+import androidx.annotation.Nullable;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+
+public interface RCTVdoPlayerViewManagerInterface<T extends View> {
+  void setEmbedInfo(T view, @Nullable ReadableMap value);
+  void setShowNativeControls(T view, boolean value);
+  void setPlayWhenReady(T view, boolean value);
+  void setPlaybackSpeed(T view, float value);
+  void setProgressIntervalMs(T view, int value);
+  void setBufferUpdateIntervalMs(T view, int value);
+  void setPlaybackFrameIntervalMs(T view, int value);
+  void setSubscribedEvents(T view, @Nullable ReadableArray value);
+  void setSeek(T view, int value);
+  void setFullscreen(T view, boolean value);
+  void setPlaybackProperties(T view, int value);
+  void seek(T view, int targetMs);
+  void enterFullscreen(T view);
+  void exitFullscreen(T view);
+  void getPlaybackProperties(T view);
+}
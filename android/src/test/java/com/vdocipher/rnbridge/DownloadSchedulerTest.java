@@ -0,0 +1,194 @@
+package com.vdocipher.rnbridge;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DownloadSchedulerTest {
+    @Rule
+    public TemporaryFolder dataDir = new TemporaryFolder();
+
+    private FakeDownloadManager downloadManager;
+    private DownloadScheduler scheduler;
+
+    @Before
+    public void setUp() throws IOException {
+        downloadManager = new FakeDownloadManager();
+        // controller calls run right away, on the calling thread
+        scheduler = new DownloadScheduler(dataDir.newFolder(), downloadManager, Runnable::run);
+    }
+
+    @Test
+    public void allDownloadsRunWithoutLimit() {
+        enqueue("a", 0);
+        enqueue("b", 0);
+        enqueue("c", 0);
+
+        assertRunning("a", "b", "c");
+        assertTrue(downloadManager.pauseCalls.isEmpty());
+    }
+
+    @Test
+    public void limitPausesDownloadsBeyondIt() {
+        scheduler.setMaxConcurrent(2);
+        enqueue("a", 0);
+        enqueue("b", 0);
+        enqueue("c", 0);
+
+        assertRunning("a", "b");
+    }
+
+    @Test
+    public void higherPriorityTakesSlotFromEarlierDownload() {
+        scheduler.setMaxConcurrent(1);
+        enqueue("a", 0);
+        enqueue("b", 5);
+
+        assertRunning("b");
+    }
+
+    @Test
+    public void equalPriorityRunsInEnqueueOrder() {
+        scheduler.setMaxConcurrent(1);
+        enqueue("a", 1);
+        enqueue("b", 1);
+
+        assertRunning("a");
+    }
+
+    @Test
+    public void raisingPriorityReschedules() {
+        scheduler.setMaxConcurrent(1);
+        enqueue("a", 0);
+        enqueue("b", 0);
+
+        scheduler.setPriority("b", 3);
+
+        assertRunning("b");
+    }
+
+    @Test
+    public void finishedDownloadFreesSlot() {
+        scheduler.setMaxConcurrent(1);
+        enqueue("a", 0);
+        enqueue("b", 0);
+
+        scheduler.remove("a");
+        downloadManager.running.remove("a");
+
+        assertRunning("b");
+    }
+
+    @Test
+    public void raisingLimitResumesWaitingDownloads() {
+        scheduler.setMaxConcurrent(1);
+        enqueue("a", 0);
+        enqueue("b", 0);
+
+        scheduler.setMaxConcurrent(0);
+
+        assertRunning("a", "b");
+    }
+
+    @Test
+    public void unmeteredDownloadWaitsForUnmeteredNetwork() {
+        downloadManager.running.add("a");
+        scheduler.add("a", 0, true, false);
+        assertRunning();
+
+        scheduler.setDeviceConditions(true, false);
+        assertRunning("a");
+
+        scheduler.setDeviceConditions(false, false);
+        assertRunning();
+    }
+
+    @Test
+    public void chargingDownloadWaitsForCharging() {
+        scheduler.setDeviceConditions(true, false);
+        downloadManager.running.add("a");
+        scheduler.add("a", 0, false, true);
+        assertRunning();
+
+        scheduler.setDeviceConditions(true, true);
+        assertRunning("a");
+    }
+
+    @Test
+    public void waitingDownloadDoesNotTakeSlot() {
+        scheduler.setMaxConcurrent(1);
+        downloadManager.running.add("a");
+        scheduler.add("a", 5, true, false);
+        enqueue("b", 0);
+
+        assertRunning("b");
+    }
+
+    @Test
+    public void userPauseHoldsDownloadAndFreesSlot() {
+        scheduler.setMaxConcurrent(1);
+        enqueue("a", 0);
+        enqueue("b", 0);
+
+        scheduler.setPaused(new String[]{"a"}, true);
+        assertRunning("b");
+
+        scheduler.setPaused(new String[]{"a"}, false);
+        assertRunning("a");
+    }
+
+    @Test
+    public void pausesBeforeResuming() {
+        scheduler.setMaxConcurrent(1);
+        enqueue("a", 0);
+        enqueue("b", 0);
+        downloadManager.calls.clear();
+
+        scheduler.setPriority("b", 1);
+
+        assertEquals(Arrays.asList("pause [a]", "resume [b]"), downloadManager.calls);
+    }
+
+    private void enqueue(String mediaId, int priority) {
+        // the download manager starts a newly enqueued download right away
+        downloadManager.running.add(mediaId);
+        scheduler.add(mediaId, priority, false, false);
+    }
+
+    private void assertRunning(String... mediaIds) {
+        assertEquals(new LinkedHashSet<>(Arrays.asList(mediaIds)), downloadManager.running);
+    }
+
+    /**
+     * Tracks which downloads run, like the download manager would.
+     */
+    private static class FakeDownloadManager implements DownloadScheduler.DownloadController {
+        final Set<String> running = new LinkedHashSet<>();
+        final List<String[]> pauseCalls = new ArrayList<>();
+        final List<String> calls = new ArrayList<>();
+
+        @Override
+        public void pause(String[] mediaIds) {
+            pauseCalls.add(mediaIds);
+            calls.add("pause " + Arrays.toString(mediaIds));
+            running.removeAll(Arrays.asList(mediaIds));
+        }
+
+        @Override
+        public void resume(String[] mediaIds) {
+            calls.add("resume " + Arrays.toString(mediaIds));
+            running.addAll(Arrays.asList(mediaIds));
+        }
+    }
+}
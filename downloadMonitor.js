@@ -10,19 +10,91 @@ nativeEvents.forEach((name) => {
   });
 });
 
+// merged onChanged events, see setProgressEventInterval
+eventEmitter.addListener('onChangedBatch', (batch) => {
+  batch.events.forEach((event) => {
+    _emitEvent('onChanged', event.mediaId, event.downloadStatus);
+  });
+});
+
 var _eventListeners = {};
 
+// listeners for events of a single media, by mediaId and event name
+var _mediaEventListeners = {};
+
 var _emitEvent = (eventName, mediaId, downloadStatus) => {
-  if (!_eventListeners[eventName]) {
+  const mediaListeners = _mediaEventListeners[mediaId];
+  [_eventListeners[eventName], mediaListeners && mediaListeners[eventName]].forEach((list) => {
+    if (list) {
+      list.slice().forEach((fn) => fn(mediaId, downloadStatus));
+    }
+  });
+};
+
+var _attached = false;
+
+// Native keeps download events until js attaches, e.g. after a bridge reload, and then replays
+// the latest event of each media. Attaching on the first listener, the replay arrives after the
+// listeners registered in the same pass, e.g. by all components mounted together.
+var _attach = () => {
+  if (_attached) {
     return;
   }
-  _eventListeners[eventName].forEach((fn) => fn(mediaId, downloadStatus));
+  _attached = true;
+  NativeModules.VdoDownload.replayDownloadEvents(({events, overflowed}) => {
+    events.forEach((event) => {
+      _emitEvent(event.eventName, event.mediaId, event.downloadStatus);
+    });
+    if (overflowed) {
+      // some events were dropped; listeners should query for the full state
+      _emitEvent('onEventsDropped', null, null);
+    }
+  });
 };
 
-var addEventListener = (eventName, fn) => {
-  const list = _eventListeners[eventName] = _eventListeners[eventName] || [];
+// events are only sent from native for media with a subscription; null subscribes to all media
+var _addListener = (lists, eventName, fn, mediaId) => {
+  const list = lists[eventName] = lists[eventName] || [];
   list.push(fn);
-  return () => list.splice(list.findIndex((f) => f === fn), 1);
+  _attach();
+  NativeModules.VdoDownload.subscribeDownloadEvents(mediaId);
+  let removed = false;
+  return () => {
+    if (removed) {
+      return;
+    }
+    removed = true;
+    list.splice(list.indexOf(fn), 1);
+    NativeModules.VdoDownload.unsubscribeDownloadEvents(mediaId);
+  };
+};
+
+var addEventListener = (eventName, fn) => {
+  return _addListener(_eventListeners, eventName, fn, null);
+};
+
+/**
+ * Like addEventListener, but only for events of a single media. Events of other media are not
+ * sent from native unless some listener needs them.
+ */
+var addMediaEventListener = (mediaId, eventName, fn) => {
+  const lists = _mediaEventListeners[mediaId] = _mediaEventListeners[mediaId] || {};
+  const unsubscribe = _addListener(lists, eventName, fn, mediaId);
+  return () => {
+    unsubscribe();
+    if (Object.keys(lists).every((name) => lists[name].length === 0)) {
+      delete _mediaEventListeners[mediaId];
+    }
+  };
+};
+
+/**
+ * Subscribes directly to a native event of the downloads module.
+ */
+var addNativeEventListener = (eventName, fn) => {
+  const subscription = eventEmitter.addListener(eventName, fn);
+  return () => subscription.remove();
 };
 
+export { addNativeEventListener, addMediaEventListener };
 export default addEventListener;
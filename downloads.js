@@ -7,7 +7,7 @@
  */
 
 import { NativeModules } from 'react-native';
-import addEventListener from './downloadMonitor';
+import addEventListener, { addNativeEventListener, addMediaEventListener } from './downloadMonitor';
 
 const { VdoDownload } = NativeModules;
 
@@ -29,12 +29,48 @@ const getDownloadOptions = (optionParams) => {
   });
 };
 
+var _nextBatchId = 1;
+
+/**
+ * Fetches download options for many videos at once. `onResult` is called for each video as soon
+ * as its options are available, with `{index, downloadOptions, enqueue}` or
+ * `{index, errorDescription}`. Resolves with all results in the order of `optionParamsList`.
+ */
+const getDownloadOptionsBatch = (optionParamsList, onResult) => {
+
+  return new Promise(function(resolve) {
+    const batchId = _nextBatchId++;
+    const results = new Array(optionParamsList.length);
+    const unsubscribe = addNativeEventListener('onDownloadOptionsResult', (event) => {
+      if (event.batchId !== batchId) {
+        return;
+      }
+      const result = event.errorDescription
+        ? {index: event.index, errorDescription: event.errorDescription}
+        : {index: event.index, downloadOptions: event.downloadOptions, enqueue: getEnqueueFn(event.nativeId)};
+      results[event.index] = result;
+      if (onResult) {
+        onResult(result);
+      }
+    });
+
+    VdoDownload.getDownloadOptionsBatch(
+      batchId,
+      optionParamsList,
+      () => {
+        // All results have been received
+        unsubscribe();
+        resolve(results);
+      }
+    );
+  });
+};
+
 const getEnqueueFn = (nativeId) => (downloadOptions) => {
 
   return new Promise(function(resolve, reject) {
-    const requestOptions = {
-      selections: downloadOptions.selections
-    };
+    const {selections, autoSelect, priority, requiresUnmetered, requiresCharging, groupId} = downloadOptions;
+    const requestOptions = {selections, autoSelect, priority, requiresUnmetered, requiresCharging, groupId};
 
     VdoDownload.enqueueDownload(
       nativeId,
@@ -42,9 +78,9 @@ const getEnqueueFn = (nativeId) => (downloadOptions) => {
       (exception, msg) => {
         reject({exception, msg});
       },
-      () => {
+      (result) => {
         // Download enqueued successfully
-        resolve();
+        resolve(result);
       }
     );
   });
@@ -66,27 +102,230 @@ const query = (queryFilters) => {
   });
 };
 
-const remove = (mediaIds) => {
+const queryPage = (queryFilters, pageOptions) => {
 
   return new Promise(function(resolve, reject) {
+    VdoDownload.queryPage(
+      queryFilters,
+      pageOptions,
+      (exception, msg) => {
+        reject({exception, msg});
+      },
+      (page) => {
+        // Query completed
+        resolve(page);
+      }
+    );
+  });
+};
+
+var _nextRemovalId = 1;
+
+/**
+ * Removes downloads in the background. `onProgress` is called as each media is removed, with
+ * `{mediaId, done, total, error}`. Resolves with `{total, removed, failed}` once all are removed.
+ */
+const remove = (mediaIds, onProgress) => {
+
+  return new Promise(function(resolve, reject) {
+    const removalId = _nextRemovalId++;
+    const unsubscribe = addNativeEventListener('onRemoveProgress', (event) => {
+      if (event.removalId === removalId && onProgress) {
+        const {mediaId, done, total, error} = event;
+        onProgress({mediaId, done, total, error});
+      }
+    });
+
     VdoDownload.remove(
+      removalId,
       mediaIds,
       (exception, msg) => {
+        unsubscribe();
         reject({exception, msg});
       },
-      () => {
-        // Remove request posted
-        resolve();
+      ({total, removed, failed}) => {
+        // All media removed
+        unsubscribe();
+        resolve({total, removed, failed});
       }
     );
   });
 };
 
+/**
+ * Resolves with the download list changes since `sequence`, coalesced to one change per media:
+ * `{sequence, reset, changes: [{type, mediaId, downloadStatus}]}`. If `reset` is true, the
+ * changes since `sequence` are no longer known and `changes` inserts every current download.
+ */
+const getDownloadListChangesSince = (sequence) => {
+
+  return new Promise(function(resolve, reject) {
+    VdoDownload.getDownloadListChangesSince(
+      sequence,
+      (exception, msg) => reject({exception, msg}),
+      (result) => resolve(result)
+    );
+  });
+};
+
+let _downloadListListenerCount = 0;
+
+/**
+ * Calls `fn` with `{sequence, changes}` whenever downloads are inserted, updated or removed.
+ * Change events are only sent from native while at least one listener is registered. Returns a
+ * function that removes the listener.
+ */
+const addDownloadListListener = (fn) => {
+  const unsubscribe = addNativeEventListener('onDownloadListChanges', fn);
+  if (_downloadListListenerCount++ === 0) {
+    VdoDownload.setDownloadListChangesEnabled(true);
+  }
+  let removed = false;
+  return () => {
+    if (removed) {
+      return;
+    }
+    removed = true;
+    unsubscribe();
+    if (--_downloadListListenerCount === 0) {
+      VdoDownload.setDownloadListChangesEnabled(false);
+    }
+  };
+};
+
+const getGroupProgress = (groupId) => {
+
+  return new Promise(function(resolve) {
+    VdoDownload.getGroupProgress(groupId, (progress) => resolve(progress));
+  });
+};
+
+/**
+ * Calls `fn` with the aggregated progress of a download group whenever any of its downloads
+ * changes. Returns a function that removes the listener.
+ */
+const addGroupProgressListener = (groupId, fn) => {
+  return addNativeEventListener('onGroupProgress', (progress) => {
+    if (progress.groupId === groupId) {
+      fn(progress);
+    }
+  });
+};
+
+const pauseGroup = (groupId) => {
+  VdoDownload.pauseGroup(groupId);
+};
+
+const resumeGroup = (groupId) => {
+  VdoDownload.resumeGroup(groupId);
+};
+
+/**
+ * Removes all downloads of a group, like `remove`.
+ */
+const removeGroup = (groupId, onProgress) => {
+
+  return new Promise(function(resolve, reject) {
+    const removalId = _nextRemovalId++;
+    const unsubscribe = addNativeEventListener('onRemoveProgress', (event) => {
+      if (event.removalId === removalId && onProgress) {
+        const {mediaId, done, total, error} = event;
+        onProgress({mediaId, done, total, error});
+      }
+    });
+
+    VdoDownload.removeGroup(
+      removalId,
+      groupId,
+      (exception, msg) => {
+        unsubscribe();
+        reject({exception, msg});
+      },
+      ({total, removed, failed}) => {
+        // All media removed
+        unsubscribe();
+        resolve({total, removed, failed});
+      }
+    );
+  });
+};
+
+const setProgressEventInterval = (intervalMs) => {
+  VdoDownload.setProgressEventInterval(intervalMs);
+};
+
+const scanDownloadIntegrity = () => {
+
+  return new Promise(function(resolve) {
+    VdoDownload.scanDownloadIntegrity((summary) => resolve(summary));
+  });
+};
+
+/**
+ * Downloads a damaged media again: removes it, fetches its download options and enqueues it
+ * with `enqueueOptions`, e.g. `{autoSelect: {maxHeight: 720}}`. Without `enqueueOptions`, the
+ * best tracks are selected.
+ */
+const repairDownload = async (mediaId, optionParams, enqueueOptions = {autoSelect: {}}) => {
+  if (!enqueueOptions.selections && !enqueueOptions.autoSelect) {
+    // checked before removing, as enqueue would fail after the media is gone
+    throw new Error('enqueueOptions needs selections or autoSelect');
+  }
+  await remove([mediaId]);
+  const {enqueue} = await getDownloadOptions(optionParams);
+  return enqueue(enqueueOptions);
+};
+
+const getDownloadThroughput = () => {
+
+  return new Promise(function(resolve) {
+    VdoDownload.getDownloadThroughput((throughput) => resolve(throughput));
+  });
+};
+
+const setStorageQuota = (quotaBytes) => {
+  VdoDownload.setStorageQuota(quotaBytes);
+};
+
+const getStorageUsage = () => {
+
+  return new Promise(function(resolve) {
+    VdoDownload.getStorageUsage((usage) => resolve(usage));
+  });
+};
+
+const setMaxConcurrentDownloads = (maxConcurrent) => {
+  VdoDownload.setMaxConcurrentDownloads(maxConcurrent);
+};
+
+const setDownloadPriority = (mediaId, priority) => {
+  VdoDownload.setDownloadPriority(mediaId, priority);
+};
+
 module.exports = {
   getDownloadOptions,
+  getDownloadOptionsBatch,
   query,
+  queryPage,
   remove,
-  addEventListener
+  getDownloadListChangesSince,
+  addDownloadListListener,
+  getGroupProgress,
+  addGroupProgressListener,
+  pauseGroup,
+  resumeGroup,
+  removeGroup,
+  setProgressEventInterval,
+  setMaxConcurrentDownloads,
+  setDownloadPriority,
+  getDownloadThroughput,
+  scanDownloadIntegrity,
+  repairDownload,
+  setStorageQuota,
+  getStorageUsage,
+  addEventListener,
+  addMediaEventListener,
+  addNativeEventListener
 };
 
 
@@ -14,7 +14,7 @@ import {
   Button,
   View
 } from 'react-native';
-import 'react-native-gesture-handler';
+import { GestureHandlerRootView } from 'react-native-gesture-handler';
 import { createAppContainer } from 'react-navigation';
 import { createStackNavigator } from 'react-navigation-stack';
 import { startVideoScreen } from 'vdocipher-rn-bridge';
@@ -111,9 +111,20 @@ const RootStack = createStackNavigator(
   }
 );
 
-export default createAppContainer(RootStack);
+const AppContainer = createAppContainer(RootStack);
+
+export default function App() {
+  return (
+    <GestureHandlerRootView style={styles.root}>
+      <AppContainer />
+    </GestureHandlerRootView>
+  );
+}
 
 const styles = StyleSheet.create({
+  root: {
+    flex: 1,
+  },
   container: {
     flex: 1,
     alignItems: 'center',
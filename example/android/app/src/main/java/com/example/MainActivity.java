@@ -1,9 +1,8 @@
 package com.example;
 
+import android.os.Bundle;
+
 import com.facebook.react.ReactActivity;
-import com.facebook.react.ReactActivityDelegate;
-import com.facebook.react.ReactRootView;
-import com.swmansion.gesturehandler.react.RNGestureHandlerEnabledRootView;
 
 public class MainActivity extends ReactActivity {
 
@@ -17,12 +16,9 @@ public class MainActivity extends ReactActivity {
     }
 
     @Override
-    protected ReactActivityDelegate createReactActivityDelegate() {
-        return new ReactActivityDelegate(this, getMainComponentName()) {
-            @Override
-            protected ReactRootView createRootView() {
-                return new RNGestureHandlerEnabledRootView(MainActivity.this);
-            }
-        };
+    protected void onCreate(Bundle savedInstanceState) {
+        // react-native-screens restores screens itself; fragments saved by the activity would
+        // be restored without their views
+        super.onCreate(null);
     }
 }
@@ -5,7 +5,28 @@
  * @format
  */
 
+const path = require('path');
+const exclusionList = require('metro-config/src/defaults/exclusionList');
+
+// the bridge is installed from the parent directory, so that the example runs against the
+// sources in this repo
+const bridgeRoot = path.resolve(__dirname, '..');
+
+const escape = p => p.replace(/[/\\^$*+?.()|[\]{}]/g, '\\$&');
+
 module.exports = {
+  watchFolders: [bridgeRoot],
+  resolver: {
+    // react and react-native must come from the example app only
+    blockList: exclusionList([
+      new RegExp(`^${escape(path.join(bridgeRoot, 'node_modules', 'react'))}\\/.*$`),
+      new RegExp(`^${escape(path.join(bridgeRoot, 'node_modules', 'react-native'))}\\/.*$`),
+    ]),
+    extraNodeModules: {
+      react: path.join(__dirname, 'node_modules', 'react'),
+      'react-native': path.join(__dirname, 'node_modules', 'react-native'),
+    },
+  },
   transformer: {
     getTransformOptions: async () => ({
       transform: {
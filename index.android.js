@@ -9,18 +9,44 @@
  *                                     }
  *                                  })
  */
-import { NativeModules } from 'react-native';
+import VdocipherRnBridge from './specs/NativeVdocipherRnBridge';
 import VdoPlayerView from './VdoPlayerView';
 import VdoDownload from './downloads';
 
-const { VdocipherRnBridge } = NativeModules;
-
 const startVideoScreen = (params) => {
   VdocipherRnBridge.startVideoScreen(params);
 }
 
+/**
+ * Resolves with recent playback events of all players, oldest first, as an array of
+ * [timestamp, event, source, arg0, arg1] arrays.
+ */
+const dumpPlaybackEvents = () => {
+  return new Promise(function(resolve) {
+    VdocipherRnBridge.dumpPlaybackEvents((events) => resolve(JSON.parse(events)));
+  });
+}
+
+/**
+ * Writes recent playback events of all players to a json file and resolves with its path.
+ */
+const dumpPlaybackEventsToFile = () => {
+  return new Promise(function(resolve, reject) {
+    VdocipherRnBridge.dumpPlaybackEventsToFile(
+      (exception, msg) => {
+        reject({exception, msg});
+      },
+      (path) => {
+        resolve(path);
+      }
+    );
+  });
+}
+
 export {
   startVideoScreen,
+  dumpPlaybackEvents,
+  dumpPlaybackEventsToFile,
   VdoPlayerView,
   VdoDownload
 }
@@ -0,0 +1,35 @@
+/**
+ * Spec for the VdocipherRnBridge native module, compatible with TurboModule codegen.
+ * Falls back to the legacy native module on react-native versions without TurboModules.
+ *
+ * @flow
+ */
+import type { TurboModule } from 'react-native/Libraries/TurboModule/RCTExport';
+import * as ReactNative from 'react-native';
+
+export type PlaybackState = {|
+  currentTime: number,
+  bufferTime: number,
+  duration: number,
+  playerState: string,
+  playWhenReady: boolean,
+  playbackSpeed: number,
+  totalPlayed: number,
+  totalCovered: number,
+|};
+
+export interface Spec extends TurboModule {
+  +hello: () => void;
+  +startVideoScreen: (embedParams: Object) => void;
+  +getPlaybackState: (viewTag: number) => ?PlaybackState;
+  +dumpPlaybackEvents: (successCallback: (events: string) => void) => void;
+  +dumpPlaybackEventsToFile: (
+    errorCallback: (exception: string, msg: string) => void,
+    successCallback: (path: string) => void,
+  ) => void;
+}
+
+const { NativeModules, TurboModuleRegistry } = ReactNative;
+
+export default ((TurboModuleRegistry && TurboModuleRegistry.get<Spec>('VdocipherRnBridge'))
+  || NativeModules.VdocipherRnBridge: Spec);
@@ -0,0 +1,119 @@
+/**
+ * Codegen spec for the native RCTVdoPlayerView component, used by both the legacy and the new
+ * (Fabric) renderer.
+ *
+ * @flow strict-local
+ */
+import type { HostComponent } from 'react-native';
+import type { ViewProps } from 'react-native/Libraries/Components/View/ViewPropTypes';
+import type {
+  DirectEventHandler,
+  Double,
+  Float,
+  Int32,
+  WithDefault,
+} from 'react-native/Libraries/Types/CodegenTypes';
+import codegenNativeCommands from 'react-native/Libraries/Utilities/codegenNativeCommands';
+import codegenNativeComponent from 'react-native/Libraries/Utilities/codegenNativeComponent';
+
+type EmbedInfo = $ReadOnly<{|
+  otp?: string,
+  playbackInfo?: string,
+  offline?: boolean,
+  mediaId?: string,
+  forceLowestBitrate?: boolean,
+  forceHighestSupportedBitrate?: boolean,
+  maxVideoBitrateKbps?: Int32,
+  bufferingGoalMs?: Int32,
+  techOverride?: $ReadOnlyArray<string>,
+  safetyNetApiKey?: string,
+  allowAdbDebugging?: boolean,
+|}>;
+
+type ErrorDescription = $ReadOnly<{|
+  errorCode: Int32,
+  errorMsg: string,
+  httpStatusCode: Int32,
+|}>;
+
+type ErrorEvent = $ReadOnly<{|
+  errorDescription: ErrorDescription,
+|}>;
+
+type Track = $ReadOnly<{|
+  id: Int32,
+  type: string,
+  language?: string,
+  bitrate: Int32,
+  width: Int32,
+  height: Int32,
+|}>;
+
+type EmptyEvent = $ReadOnly<{||}>;
+
+type NativeProps = $ReadOnly<{|
+  ...ViewProps,
+
+  embedInfo?: EmbedInfo,
+  showNativeControls?: WithDefault<boolean, true>,
+  playWhenReady?: WithDefault<boolean, true>,
+  playbackSpeed?: WithDefault<Float, 1.0>,
+  progressIntervalMs?: Int32,
+  bufferUpdateIntervalMs?: Int32,
+  playbackFrameIntervalMs?: Int32,
+  subscribedEvents?: $ReadOnlyArray<string>,
+  seek?: Int32,
+  fullscreen?: boolean,
+  playbackProperties?: Int32,
+
+  onInitSuccess?: ?DirectEventHandler<$ReadOnly<{|restored: boolean|}>>,
+  onInitFailure?: ?DirectEventHandler<ErrorEvent>,
+  onVdoLoading?: ?DirectEventHandler<EmptyEvent>,
+  onVdoLoaded?: ?DirectEventHandler<$ReadOnly<{|
+    mediaInfo: $ReadOnly<{|
+      mediaId: string,
+      type: string,
+      title: string,
+      description: string,
+      duration: Int32,
+    |}>,
+  |}>>,
+  onVdoLoadError?: ?DirectEventHandler<ErrorEvent>,
+  onVdoPlayerStateChanged?: ?DirectEventHandler<$ReadOnly<{|
+    playWhenReady: boolean,
+    playerState: string,
+  |}>>,
+  onVdoProgress?: ?DirectEventHandler<$ReadOnly<{|currentTime: Int32|}>>,
+  onVdoBufferUpdate?: ?DirectEventHandler<$ReadOnly<{|bufferTime: Int32|}>>,
+  onVdoPlaybackSpeedChanged?: ?DirectEventHandler<$ReadOnly<{|playbackSpeed: Double|}>>,
+  onVdoTracksChanged?: ?DirectEventHandler<$ReadOnly<{|
+    catalogueVersion: Int32,
+    availableTracks?: $ReadOnlyArray<Track>,
+    selectedTrackIds?: $ReadOnlyArray<Int32>,
+    selectedTracks?: $ReadOnlyArray<Track>,
+  |}>>,
+  onVdoMediaEnded?: ?DirectEventHandler<EmptyEvent>,
+  onVdoError?: ?DirectEventHandler<ErrorEvent>,
+  onVdoPlaybackProperties?: ?DirectEventHandler<$ReadOnly<{|
+    totalPlayed: Int32,
+    totalCovered: Int32,
+  |}>>,
+  onVdoEnterFullscreen?: ?DirectEventHandler<EmptyEvent>,
+  onVdoExitFullscreen?: ?DirectEventHandler<EmptyEvent>,
+  onVdoPlaybackFrame?: ?DirectEventHandler<$ReadOnly<{|frame: $ReadOnlyArray<Double>|}>>,
+|}>;
+
+type NativeType = HostComponent<NativeProps>;
+
+interface NativeCommands {
+  +seek: (viewRef: React$ElementRef<NativeType>, targetMs: Int32) => void;
+  +enterFullscreen: (viewRef: React$ElementRef<NativeType>) => void;
+  +exitFullscreen: (viewRef: React$ElementRef<NativeType>) => void;
+  +getPlaybackProperties: (viewRef: React$ElementRef<NativeType>) => void;
+}
+
+export const Commands: NativeCommands = codegenNativeCommands<NativeCommands>({
+  supportedCommands: ['seek', 'enterFullscreen', 'exitFullscreen', 'getPlaybackProperties'],
+});
+
+export default (codegenNativeComponent<NativeProps>('RCTVdoPlayerView'): NativeType);